@@ -3,9 +3,11 @@ package com.hmdp;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @MapperScan("com.hmdp.mapper")
 @SpringBootApplication
+@EnableScheduling
 public class HmDianPingApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,91 @@
+package com.hmdp.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存版本号
+ * 每次删除缓存时Redis中的版本key（{key}:ver）加1，重建缓存前先读版本号，写入时用CAS脚本比较，
+ * 删除之后才完成的重建（读到的是旧数据）会被拒绝。
+ * 本地缓存同样遵循版本号：删除时记录该key的最低有效版本（floor），低于floor的数据不再写入本地缓存；
+ * floor只需要覆盖正在进行中的重建（互斥锁TTL量级），过期后自动清理，不需要长期保留删除标记
+ */
+@Component
+public class CacheVersions {
+
+    @Value("${cache.version.key-ttl:86400}")
+    private long versionKeyTtl;
+
+    @Value("${cache.version.floor-ttl:30000}")
+    private long floorTtlMillis;
+
+    private Cache<String, Long> floors;
+
+    // 统计：CAS被拒绝的Redis写入、被拒绝的本地缓存写入
+    private final LongAdder rejectedWrites = new LongAdder();
+    private final LongAdder rejectedLocalWrites = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        floors = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(floorTtlMillis))
+                .build();
+    }
+
+    /**
+     * 版本key，与缓存key使用同一个hash tag，集群模式下位于同一个slot
+     */
+    public static String versionKey(String key) {
+        return "{" + key + "}:ver";
+    }
+
+    /**
+     * 数据更新计数key（窗口内的更新次数，所有节点共享），与版本key同一个slot
+     */
+    public static String updateKey(String key) {
+        return "{" + key + "}:upd";
+    }
+
+    public long versionKeyTtl() {
+        return versionKeyTtl;
+    }
+
+    /**
+     * 记录key被删除后的版本号，本地缓存不再接受更旧的数据
+     */
+    public void raiseFloor(String key, long version) {
+        floors.asMap().merge(key, version, Math::max);
+    }
+
+    /**
+     * 本地缓存是否可以写入该版本的数据
+     */
+    public boolean acceptLocal(String key, long version) {
+        Long floor = floors.getIfPresent(key);
+        if (floor == null || version >= floor) {
+            return true;
+        }
+        rejectedLocalWrites.increment();
+        return false;
+    }
+
+    public void recordRejectedWrite() {
+        rejectedWrites.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("floors", floors.estimatedSize());
+        stats.put("rejectedWrites", rejectedWrites.sum());
+        stats.put("rejectedLocalWrites", rejectedLocalWrites.sum());
+        return stats;
+    }
+}
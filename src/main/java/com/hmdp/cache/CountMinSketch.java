@@ -0,0 +1,80 @@
+package com.hmdp.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch 频率估算（线程安全，只会高估不会低估）
+ * 用固定内存统计任意多key的访问次数，配合定期衰减只反映最近的访问热度
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final long[] seeds;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param depth 哈希函数个数（行数）
+     * @param width 每行计数器个数，向上取整为2的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.counters = new AtomicIntegerArray(depth * this.width);
+        this.seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = ThreadLocalRandom.current().nextLong() | 1L;
+        }
+    }
+
+    /**
+     * 计数+1，返回增加后的估算值
+     */
+    public int increment(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = i * width + indexOf(h, i);
+            int value = counters.incrementAndGet(index);
+            if (value < 0) {
+                // 溢出保护
+                counters.set(index, Integer.MAX_VALUE);
+                value = Integer.MAX_VALUE;
+            }
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * 估算访问次数
+     */
+    public int estimate(String key) {
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.get(i * width + indexOf(h, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数减半（老化），让统计结果偏向最近的访问
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            int value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash ^ (hash >>> 16)) * seeds[row];
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,144 @@
+package com.hmdp.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 热点key探测器
+ * 对缓存访问按采样率抽样，用Count-Min Sketch估算访问频率，
+ * 估算值（换算回全量）超过阈值的key进入top-K热点集合；定期衰减，访问变少的key自动退出
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    /**
+     * 热点副本key的分隔符：cache:shop:1#0 ~ cache:shop:1#(N-1)
+     */
+    public static final String REPLICA_SEPARATOR = "#";
+
+    @Value("${cache.hot-key.sample-rate:10}")
+    private int sampleRate;
+
+    @Value("${cache.hot-key.threshold:1000}")
+    private int threshold;
+
+    @Value("${cache.hot-key.top-k:100}")
+    private int topK;
+
+    @Value("${cache.hot-key.replicas:0}")
+    private int replicas;
+
+    private CountMinSketch sketch;
+
+    /**
+     * 当前热点key -> 最近一次估算的访问次数（已按采样率换算）
+     */
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        sketch = new CountMinSketch(4, 4096);
+    }
+
+    /**
+     * 记录一次访问（按采样率抽样）
+     */
+    public void record(String key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        long estimate = (long) sketch.increment(key) * Math.max(1, sampleRate);
+        if (estimate < threshold) {
+            return;
+        }
+        if (hotKeys.containsKey(key) || hotKeys.size() < topK) {
+            if (hotKeys.put(key, estimate) == null) {
+                log.info("发现热点key: {}, 估算访问次数={}", key, estimate);
+            }
+            return;
+        }
+        // top-K已满，替换掉当前最冷的key
+        Map.Entry<String, Long> coldest = null;
+        for (Map.Entry<String, Long> entry : hotKeys.entrySet()) {
+            if (coldest == null || entry.getValue() < coldest.getValue()) {
+                coldest = entry;
+            }
+        }
+        if (coldest != null && coldest.getValue() < estimate && hotKeys.remove(coldest.getKey(), coldest.getValue())) {
+            hotKeys.put(key, estimate);
+            log.info("发现热点key: {}, 估算访问次数={}, 替换: {}", key, estimate, coldest.getKey());
+        }
+    }
+
+    /**
+     * 当前衰减窗口内的估算访问次数（已按采样率换算）
+     */
+    public long estimate(String key) {
+        return (long) sketch.estimate(key) * Math.max(1, sampleRate);
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 热点key随机选择一个Redis副本key，不是热点或未开启副本时返回null
+     */
+    public String replicaKeyOf(String key) {
+        if (replicas <= 0 || !isHot(key)) {
+            return null;
+        }
+        return key + REPLICA_SEPARATOR + ThreadLocalRandom.current().nextInt(replicas);
+    }
+
+    /**
+     * 所有可能存在的副本key（用于删除）
+     */
+    public List<String> replicaKeysOf(String key) {
+        List<String> keys = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++) {
+            keys.add(key + REPLICA_SEPARATOR + i);
+        }
+        return keys;
+    }
+
+    /**
+     * 定期衰减：计数减半，低于阈值的key退出热点集合
+     */
+    @Scheduled(fixedDelayString = "${cache.hot-key.decay-interval:10000}")
+    public void decay() {
+        sketch.decay();
+        hotKeys.entrySet().removeIf(entry -> {
+            long estimate = (long) sketch.estimate(entry.getKey()) * Math.max(1, sampleRate);
+            if (estimate < threshold) {
+                log.info("热点key降温: {}", entry.getKey());
+                return true;
+            }
+            entry.setValue(estimate);
+            return false;
+        });
+    }
+
+    /**
+     * 当前热点key及估算访问次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threshold", threshold);
+        stats.put("sampleRate", sampleRate);
+        stats.put("replicas", replicas);
+        stats.put("hotKeys", new HashMap<>(hotKeys));
+        return stats;
+    }
+}
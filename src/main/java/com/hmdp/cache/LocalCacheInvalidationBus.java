@@ -0,0 +1,261 @@
+package com.hmdp.cache;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.cache.region.CacheRegion;
+import com.hmdp.cache.region.CacheRegionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存失效广播总线
+ * 基于Redis发布订阅，把本节点删除的key广播给所有节点，让各节点同步淘汰Caffeine中的旧数据
+ * 发送端按flush间隔合并、去重后批量发送，避免一次更新一条消息；
+ * 每个key附带删除后的版本号，接收端据此拒绝写入更旧的本地缓存。
+ * cache.invalidation.mode=tracking 时改用RESP3 CLIENT TRACKING由Redis推送失效消息（见RedisClientTracking），
+ * 不再发送广播。两种模式都统计本节点删除到收到失效通知的延迟，用于对比
+ */
+@Slf4j
+@Component
+public class LocalCacheInvalidationBus {
+
+    private static final String TOPIC = "cache:local:invalidate";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private RedisProperties redisProperties;
+
+    @Resource
+    private CacheRegionRegistry cacheRegionRegistry;
+
+    @Value("${cache.invalidation.mode:bus}")
+    private String mode;
+
+    @Value("${cache.invalidation.flush-interval:5}")
+    private long flushInterval;
+
+    @Value("${cache.invalidation.max-batch:500}")
+    private int maxBatch;
+
+    /**
+     * 节点标识，用于忽略自己发出的消息（本节点已在删除时同步淘汰）
+     */
+    private final String nodeId = IdUtil.simpleUUID();
+
+    /**
+     * 待发送的key -> 版本号（同一key合并时保留较大的版本）
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<Map<String, Long>>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+    /**
+     * 本节点删除的key -> 删除时间（纳秒），收到对应的失效通知时计算延迟
+     */
+    private final Cache<String, Long> inflight = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .build();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-invalidation-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 统计：发送批次、发送key数、接收key数
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder publishedKeys = new LongAdder();
+    private final LongAdder receivedKeys = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder latencyMicros = new LongAdder();
+    private final AtomicLong maxLatencyMicros = new AtomicLong();
+
+    private RTopic topic;
+    private RedisClientTracking tracking;
+
+    @PostConstruct
+    public void init() {
+        if (isTracking()) {
+            List<String> prefixes = new ArrayList<>();
+            for (CacheRegion region : cacheRegionRegistry.regions()) {
+                prefixes.add(region.getPrefix());
+            }
+            tracking = new RedisClientTracking(redisProperties, prefixes, this::onTrackingInvalidate, this::reset);
+            tracking.start();
+            log.info("本地缓存失效通知使用RESP3 CLIENT TRACKING");
+            return;
+        }
+        topic = redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+        topic.addListener(String.class, (channel, msg) -> onMessage(msg));
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        log.info("本地缓存失效广播启动成功: nodeId={}, flushInterval={}ms", nodeId, flushInterval);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (tracking != null) {
+            tracking.stop();
+        }
+        flusher.shutdown();
+        // 停机前把剩余的key发送出去
+        flush();
+    }
+
+    /**
+     * 注册失效监听器（收到其他节点广播的key及版本号时回调）
+     */
+    public void subscribe(Consumer<Map<String, Long>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 注册重置监听器（跟踪模式下失效消息可能丢失时回调，需要清空本地缓存）
+     */
+    public void subscribeReset(Runnable listener) {
+        resetListeners.add(listener);
+    }
+
+    /**
+     * 提交需要广播失效的key，异步合并发送（跟踪模式下由Redis推送，只记录删除时间）
+     * @param version 删除后的版本号
+     */
+    public void publish(String key, long version) {
+        inflight.put(key, System.nanoTime());
+        if (!isTracking()) {
+            pending.merge(key, version, Math::max);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("mode", mode);
+        stats.put("resets", resets.sum());
+        long count = latencyCount.sum();
+        stats.put("latencySamples", count);
+        stats.put("avgLatencyMicros", count == 0 ? 0 : latencyMicros.sum() / count);
+        stats.put("maxLatencyMicros", maxLatencyMicros.get());
+        stats.put("pending", pending.size());
+        stats.put("publishedBatches", publishedBatches.sum());
+        stats.put("publishedKeys", publishedKeys.sum());
+        stats.put("receivedKeys", receivedKeys.sum());
+        return stats;
+    }
+
+    private void flush() {
+        while (!pending.isEmpty()) {
+            List<String> keys = new ArrayList<>(Math.min(pending.size(), maxBatch));
+            List<Long> versions = new ArrayList<>(Math.min(pending.size(), maxBatch));
+            Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator();
+            while (it.hasNext() && keys.size() < maxBatch) {
+                Map.Entry<String, Long> entry = it.next();
+                keys.add(entry.getKey());
+                versions.add(entry.getValue());
+                // 发送期间版本号又变化的key留在队列中，下次再发送
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            JSONObject msg = new JSONObject();
+            msg.set("node", nodeId);
+            msg.set("keys", keys);
+            msg.set("versions", versions);
+            try {
+                topic.publish(msg.toString());
+            } catch (Exception e) {
+                // 发送失败放回队列，下个周期重试
+                log.error("本地缓存失效广播发送失败, keys={}", keys.size(), e);
+                for (int i = 0; i < keys.size(); i++) {
+                    pending.merge(keys.get(i), versions.get(i), Math::max);
+                }
+                return;
+            }
+            publishedBatches.increment();
+            publishedKeys.add(keys.size());
+        }
+    }
+
+    private void onMessage(String msg) {
+        try {
+            JSONObject json = JSONUtil.parseObj(msg);
+            List<String> keys = json.getJSONArray("keys").toList(String.class);
+            if (nodeId.equals(json.getStr("node"))) {
+                // 自己发出的消息只用于统计延迟，本节点已在删除时同步淘汰
+                keys.forEach(this::recordLatency);
+                return;
+            }
+            // 兼容不带版本号的旧消息，按版本0处理
+            List<Long> versions = json.containsKey("versions")
+                    ? json.getJSONArray("versions").toList(Long.class) : null;
+            Map<String, Long> invalidated = new HashMap<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                invalidated.put(keys.get(i), versions == null ? 0L : versions.get(i));
+            }
+            receivedKeys.add(keys.size());
+            for (Consumer<Map<String, Long>> listener : listeners) {
+                listener.accept(invalidated);
+            }
+        } catch (Exception e) {
+            log.error("处理本地缓存失效广播失败: {}", msg, e);
+        }
+    }
+
+    private void onTrackingInvalidate(String key, long version) {
+        if (version == 0) {
+            receivedKeys.increment();
+            recordLatency(key);
+        }
+        Map<String, Long> invalidated = Collections.singletonMap(key, version);
+        for (Consumer<Map<String, Long>> listener : listeners) {
+            listener.accept(invalidated);
+        }
+    }
+
+    private void reset() {
+        resets.increment();
+        for (Runnable listener : resetListeners) {
+            listener.run();
+        }
+    }
+
+    private void recordLatency(String key) {
+        Long start = inflight.asMap().remove(key);
+        if (start == null) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        latencyCount.increment();
+        latencyMicros.add(micros);
+        maxLatencyMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    private boolean isTracking() {
+        return "tracking".equals(mode);
+    }
+}
@@ -0,0 +1,86 @@
+package com.hmdp.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存重建耗时统计 + 提前刷新判断（XFetch算法）
+ * 按key前缀记录重建耗时的指数加权平均值，重建越慢的数据越早开始刷新：
+ * now - cost * beta * ln(random) >= expireTime 时触发提前刷新
+ */
+@Component
+public class RebuildCostTracker {
+
+    /**
+     * 指数加权平均的平滑系数
+     */
+    private static final double ALPHA = 0.2;
+
+    @Value("${cache.refresh-ahead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.refresh-ahead.beta:1.0}")
+    private double beta;
+
+    @Value("${cache.refresh-ahead.default-cost:100}")
+    private long defaultCostMillis;
+
+    private final Map<String, Cost> costs = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次重建耗时
+     */
+    public void record(String prefix, long millis) {
+        costs.computeIfAbsent(prefix, k -> new Cost()).add(millis);
+    }
+
+    /**
+     * 平均重建耗时（毫秒），没有样本时返回默认值
+     */
+    public double averageMillis(String prefix) {
+        Cost cost = costs.get(prefix);
+        return cost == null || cost.count == 0 ? defaultCostMillis : cost.ewma;
+    }
+
+    /**
+     * 是否应该在逻辑过期前提前刷新
+     */
+    public boolean shouldRefreshEarly(String prefix, long expireAtMillis) {
+        if (!enabled) {
+            return false;
+        }
+        double gap = -averageMillis(prefix) * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= expireAtMillis;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        costs.forEach((prefix, cost) -> {
+            Map<String, Object> item = new HashMap<>();
+            synchronized (cost) {
+                item.put("count", cost.count);
+                item.put("avgMillis", Math.round(cost.ewma));
+                item.put("maxMillis", cost.max);
+            }
+            stats.put(prefix, item);
+        });
+        return stats;
+    }
+
+    private static class Cost {
+        private volatile long count;
+        private volatile double ewma;
+        private long max;
+
+        synchronized void add(long millis) {
+            ewma = count == 0 ? millis : ALPHA * millis + (1 - ALPHA) * ewma;
+            max = Math.max(max, millis);
+            count++;
+        }
+    }
+}
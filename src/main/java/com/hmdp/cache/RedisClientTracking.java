@@ -0,0 +1,123 @@
+package com.hmdp.cache;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于RESP3 CLIENT TRACKING（广播模式）的失效通知
+ * 使用一条独立的RESP3连接订阅版本key前缀（{cache:shop: ...），缓存删除时版本key被INCR，
+ * Redis把失效消息直接推送到所有开启跟踪的节点（包括发起删除的节点）。
+ * 只跟踪版本key而不跟踪数据key：重建写入数据key不会触发失效，避免节点刚写入的本地缓存被自己的写操作淘汰。
+ * 连接断开期间的失效消息会丢失，重连后重新开启跟踪并回调onReset清空本地缓存
+ */
+@Slf4j
+public class RedisClientTracking {
+
+    private static final String VERSION_SUFFIX = ":ver";
+
+    private final RedisClient client;
+    private final String[] prefixes;
+    private final BiConsumer<String, Long> onInvalidate;
+    private final Runnable onReset;
+    private StatefulRedisConnection<String, String> connection;
+
+    /**
+     * @param prefixes     需要跟踪的缓存key前缀（数据key前缀，内部转换为版本key前缀）
+     * @param onInvalidate 缓存key失效回调：先以版本0立即回调，读取到最新版本号后再回调一次
+     * @param onReset      跟踪状态丢失（重连、FLUSHALL）时的回调
+     */
+    public RedisClientTracking(RedisProperties properties, List<String> prefixes,
+                               BiConsumer<String, Long> onInvalidate, Runnable onReset) {
+        RedisURI.Builder uri = RedisURI.builder()
+                .withHost(properties.getHost())
+                .withPort(properties.getPort())
+                .withDatabase(properties.getDatabase());
+        if (properties.getPassword() != null) {
+            uri.withPassword(properties.getPassword().toCharArray());
+        }
+        this.client = RedisClient.create(uri.build());
+        this.client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+        this.prefixes = prefixes.stream().map(prefix -> "{" + prefix).distinct().toArray(String[]::new);
+        this.onInvalidate = onInvalidate;
+        this.onReset = onReset;
+    }
+
+    public void start() {
+        connection = client.connect(StringCodec.UTF8);
+        connection.addListener(this::onPush);
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> channel, SocketAddress address) {
+                // 首次连接由start同步开启；重连时重新开启跟踪，断开期间可能错过失效消息，清空本地缓存
+                if (connection != null) {
+                    log.warn("RESP3跟踪连接已重连，重新开启CLIENT TRACKING并清空本地缓存");
+                    connection.async().clientTracking(trackingArgs());
+                    onReset.run();
+                }
+            }
+        });
+        connection.sync().clientTracking(trackingArgs());
+        log.info("RESP3 CLIENT TRACKING已开启, prefixes={}", (Object) prefixes);
+    }
+
+    public void stop() {
+        if (connection != null) {
+            connection.close();
+        }
+        client.shutdown();
+    }
+
+    private TrackingArgs trackingArgs() {
+        return TrackingArgs.Builder.enabled().bcast().prefixes(prefixes);
+    }
+
+    private void onPush(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        // FLUSHALL/FLUSHDB时key列表为空
+        if (!(keys instanceof List)) {
+            onReset.run();
+            return;
+        }
+        for (Object versionKey : (List<?>) keys) {
+            String key = dataKeyOf(String.valueOf(versionKey));
+            if (key == null) {
+                continue;
+            }
+            onInvalidate.accept(key, 0L);
+            // 读取删除后的版本号，用于拒绝进行中的重建写入旧数据
+            connection.async().get(String.valueOf(versionKey)).thenAccept(version -> {
+                if (version != null) {
+                    onInvalidate.accept(key, Long.parseLong(version));
+                }
+            });
+        }
+    }
+
+    /**
+     * 版本key {cache:shop:1}:ver 还原为数据key cache:shop:1，不是版本key时返回null
+     */
+    static String dataKeyOf(String versionKey) {
+        if (!versionKey.startsWith("{") || !versionKey.endsWith("}" + VERSION_SUFFIX)) {
+            return null;
+        }
+        return versionKey.substring(1, versionKey.length() - VERSION_SUFFIX.length() - 1);
+    }
+}
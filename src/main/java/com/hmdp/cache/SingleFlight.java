@@ -0,0 +1,113 @@
+package com.hmdp.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内单飞加载器（single-flight）
+ * 同一个JVM内，同一个key并发未命中时只有第一个线程（leader）真正执行加载，
+ * 其余线程共享leader的CompletableFuture结果，避免大量线程休眠重试、抢占Redis锁
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    /**
+     * 等待leader结果的最长时间（秒），与Redis互斥锁TTL保持一致
+     */
+    private static final long WAIT_TIMEOUT_SECONDS = 10L;
+
+    private final ConcurrentHashMap<String, Call> calls = new ConcurrentHashMap<>();
+
+    // 统计：真正执行加载的次数、共享结果的次数
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * 执行加载，同一key同一时刻只会有一个loader在运行
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R execute(String key, Supplier<R> loader) {
+        Call call = new Call();
+        Call existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            // 已有leader在加载，等待其结果
+            return (R) existing.await(key);
+        }
+
+        // 当前线程是leader，负责加载
+        loadCount.increment();
+        try {
+            R r = loader.get();
+            call.future.complete(r);
+            return r;
+        } catch (Throwable e) {
+            // Error或被偷偷抛出的受检异常也要通知等待的线程，否则它们要等到超时
+            call.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * 当前正在加载的key及其等待线程数
+     */
+    public Map<String, Integer> inflightWaiters() {
+        Map<String, Integer> result = new HashMap<>(calls.size());
+        calls.forEach((key, call) -> result.put(key, call.waiters.get()));
+        return result;
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("loadCount", loadCount.sum());
+        stats.put("sharedCount", sharedCount.sum());
+        stats.put("inflight", inflightWaiters());
+        return stats;
+    }
+
+    private class Call {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        private Object await(String key) {
+            waiters.incrementAndGet();
+            sharedCount.increment();
+            try {
+                return future.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (TimeoutException e) {
+                log.warn("等待缓存加载超时: {}", key);
+                throw new RuntimeException("缓存加载超时: " + key, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.hmdp.cache.audit;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.cache.breaker.CircuitBreaker;
+import com.hmdp.cache.breaker.L2Guard;
+import com.hmdp.cache.codec.CacheCodecs;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import com.hmdp.utils.CacheClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 缓存一致性审计
+ * 定期用SCAN游标（跨周期续扫）遍历各审计目标前缀下的缓存key，按采样率抽取一批，
+ * 批量查询数据库后比较：有update_time时按update_time比较，否则比较JSON内容。
+ * 不一致的key通过CacheClient.delete修复，并统计漂移率和漂移时长（数据库更新后缓存仍是旧数据的时间）。
+ * 节流：每个周期最多审计batch-size个key、一次IN查询；Redis熔断器非关闭状态时跳过；
+ * 刚更新的数据（grace内）可能正在延迟双删，不计入漂移
+ */
+@Slf4j
+@Component
+public class CacheConsistencyAuditor {
+
+    @Resource
+    @Qualifier("cacheRedisTemplate")
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheCodecs cacheCodecs;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private L2Guard l2Guard;
+
+    @Resource
+    private IShopService shopService;
+
+    @Value("${cache.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.audit.sample-rate:0.1}")
+    private double sampleRate;
+
+    @Value("${cache.audit.batch-size:50}")
+    private int batchSize;
+
+    @Value("${cache.audit.grace:5000}")
+    private long graceMillis;
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SCAN_SCRIPT;
+
+    static {
+        SCAN_SCRIPT = new DefaultRedisScript<>();
+        SCAN_SCRIPT.setLocation(new ClassPathResource("cache_scan.lua"));
+        SCAN_SCRIPT.setResultType(List.class);
+    }
+
+    private final List<Target<?>> targets = new CopyOnWriteArrayList<>();
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder skippedInFlight = new LongAdder();
+    private final LongAdder driftSeconds = new LongAdder();
+    private final AtomicLong maxDriftSeconds = new AtomicLong();
+    private final AtomicLong passes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        register(CACHE_SHOP_KEY, Shop.class, shopService::listByIds, Shop::getId, Shop::getUpdateTime);
+    }
+
+    /**
+     * 注册审计目标
+     * @param loader     按id批量查询数据库
+     * @param idOf       实体的id
+     * @param updateTime 实体的更新时间，返回null时按JSON内容比较
+     */
+    public <T> void register(String prefix, Class<T> type, Function<Collection<Long>, Collection<T>> loader,
+                             Function<T, Long> idOf, Function<T, LocalDateTime> updateTime) {
+        targets.add(new Target<>(prefix, type, loader, idOf, updateTime));
+    }
+
+    @Scheduled(fixedDelayString = "${cache.audit.interval:10000}", initialDelayString = "${cache.audit.interval:10000}")
+    public void audit() {
+        if (!enabled || l2Guard.state() != CircuitBreaker.State.CLOSED) {
+            return;
+        }
+        for (Target<?> target : targets) {
+            try {
+                auditTarget(target);
+            } catch (Exception e) {
+                log.warn("缓存一致性审计失败: {}", target.prefix, e);
+            }
+        }
+    }
+
+    private <T> void auditTarget(Target<T> target) {
+        // 1.续扫SCAN游标，按采样率抽取key
+        Map<Long, String> keys = new HashMap<>();
+        int rounds = 0;
+        while (keys.size() < batchSize && rounds++ < 10) {
+            for (String key : target.scan(stringRedisTemplate)) {
+                Long id = idOf(target.prefix, key);
+                if (id != null && ThreadLocalRandom.current().nextDouble() < sampleRate && keys.size() < batchSize) {
+                    keys.put(id, key);
+                }
+            }
+            if (target.cursor.equals("0")) {
+                passes.incrementAndGet();
+                break;
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // 2.读缓存、批量查询数据库
+        List<String> keyList = new ArrayList<>(keys.values());
+        List<byte[]> cached = cacheRedisTemplate.opsForValue().multiGet(keyList);
+        Map<Long, T> rows = new HashMap<>();
+        for (T row : target.loader.apply(keys.keySet())) {
+            rows.put(target.idOf.apply(row), row);
+        }
+
+        // 3.比较并修复
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < keyList.size(); i++) {
+            byte[] bytes = cached == null ? null : cached.get(i);
+            if (bytes == null) {
+                // 已过期或已删除
+                continue;
+            }
+            String key = keyList.get(i);
+            T row = rows.get(idOf(target.prefix, key));
+            T value;
+            try {
+                value = cacheCodecs.decodeData(bytes, target.type);
+            } catch (Exception e) {
+                continue;
+            }
+            sampled.increment();
+            LocalDateTime dbTime = row == null ? null : target.updateTime.apply(row);
+            if (!drifted(target, value, row)) {
+                continue;
+            }
+            if (dbTime != null && dbTime.isAfter(now.minus(Duration.ofMillis(graceMillis)))) {
+                skippedInFlight.increment();
+                continue;
+            }
+            mismatched.increment();
+            if (dbTime != null) {
+                long seconds = Duration.between(dbTime, now).getSeconds();
+                driftSeconds.add(seconds);
+                maxDriftSeconds.accumulateAndGet(seconds, Math::max);
+            }
+            log.warn("缓存与数据库不一致，删除缓存: {}, dbUpdateTime={}", key, dbTime);
+            try {
+                // 修复不是数据更新，不计入更新次数
+                cacheClient.evict(key);
+                repaired.increment();
+            } catch (Exception e) {
+                log.warn("修复不一致缓存失败: {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * 缓存是否与数据库不一致：空值标记但数据库有数据、有缓存但数据库没有、更新时间或内容不同
+     */
+    private <T> boolean drifted(Target<T> target, T cached, T row) {
+        if (cached == null || row == null) {
+            return cached != row;
+        }
+        LocalDateTime cachedTime = target.updateTime.apply(cached);
+        LocalDateTime dbTime = target.updateTime.apply(row);
+        if (cachedTime != null && dbTime != null) {
+            return !cachedTime.equals(dbTime);
+        }
+        return !JSONUtil.toJsonStr(cached).equals(JSONUtil.toJsonStr(row));
+    }
+
+    private static Long idOf(String prefix, String key) {
+        String id = key.substring(prefix.length());
+        // 跳过热点副本等非数据key
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return null;
+            }
+        }
+        return id.isEmpty() ? null : Long.valueOf(id);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        long n = sampled.sum();
+        long drift = mismatched.sum();
+        stats.put("sampled", n);
+        stats.put("mismatched", drift);
+        stats.put("driftRate", n == 0 ? 0 : (double) drift / n);
+        stats.put("repaired", repaired.sum());
+        stats.put("skippedInFlight", skippedInFlight.sum());
+        stats.put("avgDriftSeconds", drift == 0 ? 0 : driftSeconds.sum() / drift);
+        stats.put("maxDriftSeconds", maxDriftSeconds.get());
+        stats.put("passes", passes.get());
+        return stats;
+    }
+
+    private static class Target<T> {
+        private final String prefix;
+        private final Class<T> type;
+        private final Function<Collection<Long>, Collection<T>> loader;
+        private final Function<T, Long> idOf;
+        private final Function<T, LocalDateTime> updateTime;
+        /**
+         * SCAN游标，跨审计周期保存，一轮扫描完成后回到0
+         */
+        private volatile String cursor = "0";
+
+        Target(String prefix, Class<T> type, Function<Collection<Long>, Collection<T>> loader,
+               Function<T, Long> idOf, Function<T, LocalDateTime> updateTime) {
+            this.prefix = prefix;
+            this.type = type;
+            this.loader = loader;
+            this.idOf = idOf;
+            this.updateTime = updateTime;
+        }
+
+        /**
+         * 执行一次 SCAN cursor MATCH prefix* COUNT 100 并推进游标
+         */
+        @SuppressWarnings("unchecked")
+        List<String> scan(StringRedisTemplate template) {
+            List<Object> reply = template.execute(SCAN_SCRIPT, Collections.emptyList(), cursor, prefix + "*", "100");
+            if (reply == null || reply.size() < 2) {
+                cursor = "0";
+                return Collections.emptyList();
+            }
+            cursor = String.valueOf(reply.get(0));
+            return (List<String>) reply.get(1);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.hmdp.cache.bloom;
+
+/**
+ * 布隆过滤器抽象，每个缓存key前缀可以注册自己的实现
+ */
+public interface BloomFilter {
+
+    /**
+     * 添加元素
+     */
+    void put(String value);
+
+    /**
+     * 判断元素是否可能存在，返回false时一定不存在
+     */
+    boolean mightContain(String value);
+
+    /**
+     * 已添加的元素数量（近似值）
+     */
+    long size();
+}
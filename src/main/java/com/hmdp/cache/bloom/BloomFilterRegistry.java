@@ -0,0 +1,124 @@
+package com.hmdp.cache.bloom;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * 布隆过滤器注册中心
+ * 按缓存key前缀管理过滤器，未注册过滤器的前缀一律放行
+ * 新增元素通过Redis发布订阅广播到所有节点
+ */
+@Slf4j
+@Component
+public class BloomFilterRegistry {
+
+    private static final String TOPIC = "bloom:filter:add";
+    private static final String SEPARATOR = "|";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final Map<String, Holder> holders = new ConcurrentHashMap<>();
+
+    private RTopic topic;
+
+    @PostConstruct
+    public void init() {
+        topic = redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+        topic.addListener(String.class, (channel, msg) -> {
+            int i = msg.indexOf(SEPARATOR);
+            if (i > 0) {
+                addLocal(msg.substring(0, i), msg.substring(i + 1));
+            }
+        });
+    }
+
+    /**
+     * 判断id是否可能存在
+     */
+    public boolean mightContain(String prefix, Object id) {
+        Holder holder = holders.get(prefix);
+        if (holder == null || holder.filter == null) {
+            // 未注册或尚未构建完成，放行
+            return true;
+        }
+        return holder.filter.mightContain(String.valueOf(id));
+    }
+
+    /**
+     * 添加id并广播到其他节点
+     */
+    public void put(String prefix, Object id) {
+        String value = String.valueOf(id);
+        addLocal(prefix, value);
+        try {
+            topic.publish(prefix + SEPARATOR + value);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖定时重建兜底
+            log.error("布隆过滤器新增广播失败: {}{}", prefix, value, e);
+        }
+    }
+
+    /**
+     * 重建过滤器：构建期间新增的元素会在替换后补录，避免丢失
+     */
+    public void rebuild(String prefix, Supplier<BloomFilter> builder) {
+        Holder holder = holders.computeIfAbsent(prefix, k -> new Holder());
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        holder.pending = pending;
+        try {
+            BloomFilter filter = builder.get();
+            holder.filter = filter;
+            for (String value : pending) {
+                filter.put(value);
+            }
+            log.info("布隆过滤器重建完成: prefix={}, size={}", prefix, filter.size());
+        } finally {
+            holder.pending = null;
+        }
+    }
+
+    /**
+     * 各前缀过滤器的元素数量
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new HashMap<>();
+        holders.forEach((prefix, holder) -> {
+            BloomFilter filter = holder.filter;
+            stats.put(prefix, filter == null ? -1L : filter.size());
+        });
+        return stats;
+    }
+
+    private void addLocal(String prefix, String value) {
+        Holder holder = holders.get(prefix);
+        if (holder == null) {
+            return;
+        }
+        BloomFilter filter = holder.filter;
+        if (filter != null) {
+            filter.put(value);
+        }
+        Queue<String> pending = holder.pending;
+        if (pending != null) {
+            pending.add(value);
+        }
+    }
+
+    private static class Holder {
+        private volatile BloomFilter filter;
+        private volatile Queue<String> pending;
+    }
+}
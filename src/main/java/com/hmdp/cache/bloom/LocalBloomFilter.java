@@ -0,0 +1,104 @@
+package com.hmdp.cache.bloom;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于JVM内存位数组的布隆过滤器（线程安全）
+ * 查询完全在本地完成，不访问Redis，适合放在缓存查询的最前面
+ */
+public class LocalBloomFilter implements BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param expectedInsertions 预计元素数量
+     * @param fpp                期望误判率
+     */
+    public LocalBloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        // m = -n*ln(p)/(ln2)^2，k = m/n*ln2
+        long m = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        this.bits = new AtomicLongArray((int) ((m + 63) >>> 6));
+        this.bitSize = (long) bits.length() << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    @Override
+    public void put(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            setBit(index(h1 + i * h2));
+        }
+        count.increment();
+    }
+
+    @Override
+    public boolean mightContain(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = index(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return count.sum();
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    private long index(int combinedHash) {
+        // 保证非负
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        do {
+            old = bits.get(word);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, old, old | mask));
+    }
+
+    /**
+     * FNV-1a 64位哈希 + murmur3 finalizer 混淆
+     */
+    private static long hash64(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
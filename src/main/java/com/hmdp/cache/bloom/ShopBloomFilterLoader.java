@@ -0,0 +1,78 @@
+package com.hmdp.cache.bloom;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 店铺id布隆过滤器加载器
+ * 启动时分批读取tb_shop的id构建过滤器，并定时重建（清理已删除的店铺、按实际数量扩容）
+ */
+@Slf4j
+@Component
+public class ShopBloomFilterLoader {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Value("${bloom-filter.shop.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${bloom-filter.shop.fpp:0.01}")
+    private double fpp;
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${bloom-filter.shop.rebuild-interval:600000}",
+            fixedDelayString = "${bloom-filter.shop.rebuild-interval:600000}")
+    public void rebuild() {
+        try {
+            bloomFilterRegistry.rebuild(CACHE_SHOP_KEY, this::build);
+        } catch (Exception e) {
+            // 构建失败时保留旧过滤器（首次失败则不拦截任何请求）
+            log.error("店铺布隆过滤器构建失败", e);
+        }
+    }
+
+    private BloomFilter build() {
+        // 按实际数量扩容，预留一倍增长空间
+        long count = shopService.count();
+        LocalBloomFilter filter = new LocalBloomFilter(Math.max(expectedInsertions, count * 2), fpp);
+
+        // 按主键分批读取，只查id列，避免一次性加载全表
+        long lastId = 0;
+        while (true) {
+            List<Shop> shops = shopService.query()
+                    .select("id")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + BATCH_SIZE)
+                    .list();
+            for (Shop shop : shops) {
+                filter.put(shop.getId().toString());
+            }
+            if (shops.size() < BATCH_SIZE) {
+                break;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+        return filter;
+    }
+}
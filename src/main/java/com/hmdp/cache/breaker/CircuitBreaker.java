@@ -0,0 +1,164 @@
+package com.hmdp.cache.breaker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于滑动窗口（按调用次数）的熔断器
+ * CLOSED：统计最近windowSize次调用，失败率或慢调用率超过阈值时打开；
+ * OPEN：直接拒绝调用，openDuration后进入半开；
+ * HALF_OPEN：放行halfOpenCalls次探测调用，全部成功则关闭，任意一次失败重新打开
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final int windowSize;
+    private final int minCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // 滑动窗口，以下状态都由this保护
+    private final byte[] window;
+    private int position;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    // 统计：各状态的进入次数、被拒绝的调用数
+    private final Map<State, LongAdder> transitions = new EnumMap<>(State.class);
+    private final LongAdder notPermitted = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, int failureRateThreshold,
+                          int slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new byte[windowSize];
+        for (State s : State.values()) {
+            transitions.put(s, new LongAdder());
+        }
+    }
+
+    /**
+     * 是否允许本次调用，允许时调用方必须在结束后调用onSuccess或onError
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                notPermitted.increment();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                notPermitted.increment();
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long elapsedNanos) {
+        boolean slow = elapsedNanos >= slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(slow ? SLOW : 0);
+    }
+
+    public synchronized void onError(long elapsedNanos) {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record((byte) (FAILED | (elapsedNanos >= slowCallNanos ? SLOW : 0)));
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state);
+        stats.put("calls", calls);
+        stats.put("failureRate", calls == 0 ? 0 : failures * 100 / calls);
+        stats.put("slowCallRate", calls == 0 ? 0 : slowCalls * 100 / calls);
+        stats.put("notPermitted", notPermitted.sum());
+        Map<String, Long> counts = new HashMap<>();
+        transitions.forEach((s, count) -> counts.put(s.name(), count.sum()));
+        stats.put("transitions", counts);
+        return stats;
+    }
+
+    private void record(byte outcome) {
+        // 覆盖窗口中最旧的一次调用
+        if (calls == windowSize) {
+            byte old = window[position];
+            failures -= old & FAILED;
+            slowCalls -= (old & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        window[position] = outcome;
+        position = (position + 1) % windowSize;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (state == State.CLOSED && calls >= minCalls
+                && (failures * 100 >= failureRateThreshold * calls || slowCalls * 100 >= slowCallRateThreshold * calls)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        log.warn("熔断器[{}]状态变化: {} -> {}, failures={}, slowCalls={}, calls={}",
+                name, state, next, failures, slowCalls, calls);
+        state = next;
+        transitions.get(next).increment();
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (next == State.HALF_OPEN) {
+            halfOpenPermits = 0;
+            halfOpenSuccesses = 0;
+        } else {
+            // 关闭时清空窗口，重新统计
+            calls = 0;
+            failures = 0;
+            slowCalls = 0;
+            position = 0;
+        }
+    }
+}
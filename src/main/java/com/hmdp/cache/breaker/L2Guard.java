@@ -0,0 +1,127 @@
+package com.hmdp.cache.breaker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 二级缓存（Redis）访问保护
+ * 所有缓存相关的Redis调用经过熔断器统计失败率和慢调用率；熔断打开时快速失败，
+ * 由CacheClient降级为返回本地缓存中已过期的数据（stale-if-error）或限流访问数据库
+ */
+@Slf4j
+@Component
+public class L2Guard {
+
+    @Value("${cache.breaker.window-size:50}")
+    private int windowSize;
+
+    @Value("${cache.breaker.min-calls:20}")
+    private int minCalls;
+
+    @Value("${cache.breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${cache.breaker.slow-call-rate-threshold:80}")
+    private int slowCallRateThreshold;
+
+    @Value("${cache.breaker.slow-call-millis:200}")
+    private long slowCallMillis;
+
+    @Value("${cache.breaker.open-millis:5000}")
+    private long openMillis;
+
+    @Value("${cache.breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${cache.breaker.db-permits-per-second:50}")
+    private double dbPermitsPerSecond;
+
+    private CircuitBreaker breaker;
+    private TokenBucket dbLimiter;
+
+    // 统计：降级返回旧数据次数、降级查库次数、降级被限流次数
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder dbFallbacks = new LongAdder();
+    private final LongAdder dbRejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        breaker = new CircuitBreaker("redis", windowSize, minCalls, failureRateThreshold,
+                slowCallRateThreshold, slowCallMillis, openMillis, halfOpenCalls);
+        dbLimiter = new TokenBucket(dbPermitsPerSecond, (int) Math.max(1, dbPermitsPerSecond));
+    }
+
+    /**
+     * 执行Redis调用，熔断打开或调用失败时抛出L2UnavailableException
+     * 调用抛出Error时也按失败上报后原样抛出，保证半开状态的探测许可一定被归还
+     */
+    public <T> T call(Supplier<T> redisCall) {
+        if (!breaker.tryAcquire()) {
+            throw new L2UnavailableException("Redis熔断中");
+        }
+        long begin = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = redisCall.get();
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            throw new L2UnavailableException("Redis调用失败", e);
+        } finally {
+            if (success) {
+                breaker.onSuccess(System.nanoTime() - begin);
+            } else {
+                breaker.onError(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    /**
+     * 执行可以丢弃的Redis写入（回写缓存），失败只记录日志
+     */
+    public void callQuietly(Runnable redisCall) {
+        try {
+            call(() -> {
+                redisCall.run();
+                return null;
+            });
+        } catch (L2UnavailableException e) {
+            log.debug("跳过缓存写入: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 降级时是否允许访问数据库
+     */
+    public boolean tryDbFallback() {
+        if (dbLimiter.tryAcquire()) {
+            dbFallbacks.increment();
+            return true;
+        }
+        dbRejected.increment();
+        return false;
+    }
+
+    public void recordStaleHit() {
+        staleHits.increment();
+    }
+
+    public CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>(breaker.stats());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("dbFallbacks", dbFallbacks.sum());
+        stats.put("dbRejected", dbRejected.sum());
+        return stats;
+    }
+}
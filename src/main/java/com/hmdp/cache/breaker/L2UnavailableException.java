@@ -0,0 +1,15 @@
+package com.hmdp.cache.breaker;
+
+/**
+ * Redis（二级缓存）不可用：熔断器打开拒绝调用，或调用本身失败
+ */
+public class L2UnavailableException extends RuntimeException {
+
+    public L2UnavailableException(String message) {
+        super(message);
+    }
+
+    public L2UnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,32 @@
+package com.hmdp.cache.breaker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地令牌桶限流（不依赖Redis，Redis不可用时也能工作）
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,359 @@
+package com.hmdp.cache.codec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于字段schema的紧凑二进制编解码器
+ * 格式：[类型头 1B][schema指纹 4B][空值位图][按字段名排序的字段值...]
+ * 整数使用zigzag变长编码，字符串为长度+UTF-8，时间类型编码为秒/纳秒
+ * 类结构变化时指纹不同，解码失败按缓存未命中处理；含不支持字段类型的类交给fallback编解码器
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final byte ID = 0x01;
+
+    private final CacheCodec fallback;
+    private final ConcurrentHashMap<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    public BinaryCacheCodec(CacheCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Schema schema = schemaOf(value.getClass());
+        if (schema == null) {
+            return fallback.encode(value);
+        }
+        Output out = new Output(64);
+        out.write(ID);
+        out.writeInt(schema.fingerprint);
+        try {
+            // 空值位图
+            byte[] nulls = new byte[(schema.fields.length + 7) >>> 3];
+            Object[] values = new Object[schema.fields.length];
+            for (int i = 0; i < schema.fields.length; i++) {
+                values[i] = schema.fields[i].get(value);
+                if (values[i] == null) {
+                    nulls[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+            out.write(nulls);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    writeValue(out, schema.kinds[i], values[i]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("二进制编码失败: " + value.getClass().getName(), e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        Schema schema = schemaOf(type);
+        if (schema == null) {
+            throw new IllegalStateException("不支持二进制解码的类型: " + type.getName());
+        }
+        Input in = new Input(bytes, 1);
+        int fingerprint = in.readInt();
+        if (fingerprint != schema.fingerprint) {
+            throw new IllegalStateException("schema指纹不匹配: " + type.getName());
+        }
+        try {
+            T target = type.cast(schema.constructor.newInstance());
+            byte[] nulls = in.readBytes((schema.fields.length + 7) >>> 3);
+            for (int i = 0; i < schema.fields.length; i++) {
+                if ((nulls[i >>> 3] & (1 << (i & 7))) != 0) {
+                    continue;
+                }
+                schema.fields[i].set(target, readValue(in, schema.kinds[i]));
+            }
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("二进制解码失败: " + type.getName(), e);
+        }
+    }
+
+    private Schema schemaOf(Class<?> type) {
+        Schema schema = schemas.computeIfAbsent(type, Schema::build);
+        return schema == Schema.UNSUPPORTED ? null : schema;
+    }
+
+    private static void writeValue(Output out, Kind kind, Object value) {
+        switch (kind) {
+            case LONG:
+                out.writeVarLong((Long) value);
+                break;
+            case INT:
+                out.writeVarLong((Integer) value);
+                break;
+            case SHORT:
+                out.writeVarLong((Short) value);
+                break;
+            case BYTE:
+                out.write((Byte) value);
+                break;
+            case BOOLEAN:
+                out.write((Boolean) value ? 1 : 0);
+                break;
+            case DOUBLE:
+                out.writeLong(Double.doubleToRawLongBits((Double) value));
+                break;
+            case FLOAT:
+                out.writeInt(Float.floatToRawIntBits((Float) value));
+                break;
+            case STRING:
+                byte[] str = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.writeVarLong(str.length);
+                out.write(str);
+                break;
+            case LOCAL_DATE_TIME:
+                LocalDateTime time = (LocalDateTime) value;
+                out.writeVarLong(time.toEpochSecond(ZoneOffset.UTC));
+                out.writeVarLong(time.getNano());
+                break;
+            case LOCAL_DATE:
+                out.writeVarLong(((LocalDate) value).toEpochDay());
+                break;
+            default:
+                throw new IllegalStateException("未知字段类型: " + kind);
+        }
+    }
+
+    private static Object readValue(Input in, Kind kind) {
+        switch (kind) {
+            case LONG:
+                return in.readVarLong();
+            case INT:
+                return (int) in.readVarLong();
+            case SHORT:
+                return (short) in.readVarLong();
+            case BYTE:
+                return in.read();
+            case BOOLEAN:
+                return in.read() != 0;
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case STRING:
+                int len = (int) in.readVarLong();
+                return in.readString(len);
+            case LOCAL_DATE_TIME:
+                long seconds = in.readVarLong();
+                int nanos = (int) in.readVarLong();
+                return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.readVarLong());
+            default:
+                throw new IllegalStateException("未知字段类型: " + kind);
+        }
+    }
+
+    private enum Kind {
+        LONG, INT, SHORT, BYTE, BOOLEAN, DOUBLE, FLOAT, STRING, LOCAL_DATE_TIME, LOCAL_DATE;
+
+        private static final Map<Class<?>, Kind> TYPES = new HashMap<>();
+
+        static {
+            TYPES.put(Long.class, LONG);
+            TYPES.put(long.class, LONG);
+            TYPES.put(Integer.class, INT);
+            TYPES.put(int.class, INT);
+            TYPES.put(Short.class, SHORT);
+            TYPES.put(short.class, SHORT);
+            TYPES.put(Byte.class, BYTE);
+            TYPES.put(byte.class, BYTE);
+            TYPES.put(Boolean.class, BOOLEAN);
+            TYPES.put(boolean.class, BOOLEAN);
+            TYPES.put(Double.class, DOUBLE);
+            TYPES.put(double.class, DOUBLE);
+            TYPES.put(Float.class, FLOAT);
+            TYPES.put(float.class, FLOAT);
+            TYPES.put(String.class, STRING);
+            TYPES.put(LocalDateTime.class, LOCAL_DATE_TIME);
+            TYPES.put(LocalDate.class, LOCAL_DATE);
+        }
+
+        static Kind of(Class<?> type) {
+            return TYPES.get(type);
+        }
+    }
+
+    private static class Schema {
+        private static final Schema UNSUPPORTED = new Schema(null, new Field[0], new Kind[0], 0);
+
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final Kind[] kinds;
+        private final int fingerprint;
+
+        private Schema(Constructor<?> constructor, Field[] fields, Kind[] kinds, int fingerprint) {
+            this.constructor = constructor;
+            this.fields = fields;
+            this.kinds = kinds;
+            this.fingerprint = fingerprint;
+        }
+
+        static Schema build(Class<?> type) {
+            Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return UNSUPPORTED;
+            }
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    fields.add(field);
+                }
+            }
+            fields.sort(Comparator.comparing(Field::getName));
+
+            Kind[] kinds = new Kind[fields.size()];
+            StringBuilder signature = new StringBuilder(type.getName());
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                kinds[i] = Kind.of(field.getType());
+                if (kinds[i] == null) {
+                    return UNSUPPORTED;
+                }
+                field.setAccessible(true);
+                signature.append(';').append(field.getName()).append(':').append(kinds[i]);
+            }
+            return new Schema(constructor, fields.toArray(new Field[0]), kinds, signature.toString().hashCode());
+        }
+    }
+
+    /**
+     * 可扩容的字节输出（避免ByteArrayOutputStream的同步开销）
+     */
+    private static class Output {
+        private byte[] buf;
+        private int pos;
+
+        Output(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeVarLong(long v) {
+            // zigzag，小的负数也能短编码
+            long z = (v << 1) ^ (v >> 63);
+            ensure(10);
+            while ((z & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            buf[pos++] = (byte) z;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[pos];
+            System.arraycopy(buf, 0, bytes, 0, pos);
+            return bytes;
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                byte[] bigger = new byte[Math.max(buf.length << 1, pos + n)];
+                System.arraycopy(buf, 0, bigger, 0, pos);
+                buf = bigger;
+            }
+        }
+    }
+
+    private static class Input {
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        byte read() {
+            return buf[pos++];
+        }
+
+        byte[] readBytes(int n) {
+            byte[] bytes = new byte[n];
+            System.arraycopy(buf, pos, bytes, 0, n);
+            pos += n;
+            return bytes;
+        }
+
+        String readString(int n) {
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+
+        int readInt() {
+            return (buf[pos++] & 0xFF) << 24 | (buf[pos++] & 0xFF) << 16 | (buf[pos++] & 0xFF) << 8 | (buf[pos++] & 0xFF);
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() {
+            long z = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                z |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (z >>> 1) ^ -(z & 1);
+        }
+    }
+}
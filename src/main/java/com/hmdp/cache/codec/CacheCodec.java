@@ -0,0 +1,24 @@
+package com.hmdp.cache.codec;
+
+/**
+ * 缓存值编解码器SPI
+ * 编码结果的第一个字节为编解码器标识（类型头），读取时据此选择解码器，
+ * 因此切换写入格式后旧格式的数据仍然可以正常读取
+ */
+public interface CacheCodec {
+
+    /**
+     * 编解码器标识，写在编码结果的第一个字节
+     */
+    byte id();
+
+    /**
+     * 编码（结果包含类型头）
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码（bytes包含类型头）
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+}
@@ -0,0 +1,171 @@
+package com.hmdp.cache.codec;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.utils.RedisData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 缓存编解码入口
+ * 写入使用配置的编解码器（cache.codec: binary / json / legacy），
+ * 读取按类型头分发，没有类型头的数据按旧的Hutool JSON格式解析，保证迁移期间新旧数据都能读取。
+ * 数据外层可以带版本号包装（stamp），解码时自动去掉
+ */
+@Slf4j
+@Component
+public class CacheCodecs {
+
+    /**
+     * 逻辑过期包装的类型头：[0x10][过期时间毫秒 8B][内层编码]
+     */
+    private static final byte LOGICAL_EXPIRE = 0x10;
+    /**
+     * 版本号包装的类型头：[0x20][版本号 8B][内层编码]，内层为空表示空值标记
+     */
+    private static final byte VERSIONED = 0x20;
+
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec();
+    private final BinaryCacheCodec binaryCodec = new BinaryCacheCodec(jsonCodec);
+    private final LegacyJsonCacheCodec legacyCodec = new LegacyJsonCacheCodec();
+
+    @Value("${cache.codec:binary}")
+    private String codecName;
+
+    private CacheCodec writer;
+
+    @PostConstruct
+    public void init() {
+        switch (codecName) {
+            case "json":
+                writer = jsonCodec;
+                break;
+            case "legacy":
+                writer = legacyCodec;
+                break;
+            default:
+                writer = binaryCodec;
+        }
+        log.info("缓存编解码器: {}", writer.getClass().getSimpleName());
+    }
+
+    public byte[] encode(Object value) {
+        return writer.encode(value);
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        bytes = unstamp(bytes);
+        return codecOf(bytes[0]).decode(bytes, type);
+    }
+
+    /**
+     * 给编码后的数据加上版本号
+     */
+    public byte[] stamp(long version, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 9);
+        buffer.put(VERSIONED);
+        buffer.putLong(version);
+        buffer.put(bytes);
+        return buffer.array();
+    }
+
+    /**
+     * 数据的版本号，没有版本号包装的旧数据返回0
+     */
+    public long versionOf(byte[] bytes) {
+        return bytes.length >= 9 && bytes[0] == VERSIONED ? ByteBuffer.wrap(bytes, 1, 8).getLong() : 0;
+    }
+
+    /**
+     * 是否为空值标记（内层数据为空），不复制数据
+     */
+    public boolean isNullMarker(byte[] bytes) {
+        return bytes.length == 0 || (bytes.length == 9 && bytes[0] == VERSIONED);
+    }
+
+    /**
+     * 去掉版本号包装，返回内层数据
+     */
+    public byte[] unstamp(byte[] bytes) {
+        if (bytes.length < 9 || bytes[0] != VERSIONED) {
+            return bytes;
+        }
+        byte[] inner = new byte[bytes.length - 9];
+        System.arraycopy(bytes, 9, inner, 0, inner.length);
+        return inner;
+    }
+
+    /**
+     * 解码任意格式的缓存数据（普通或逻辑过期），只返回数据本身，空值标记返回null
+     */
+    public <T> T decodeData(byte[] bytes, Class<T> type) {
+        byte[] inner = unstamp(bytes);
+        if (inner.length == 0) {
+            return null;
+        }
+        if (inner[0] == LOGICAL_EXPIRE) {
+            return type.cast(decodeWithExpire(inner, type).getData());
+        }
+        return decode(inner, type);
+    }
+
+    /**
+     * 编码逻辑过期数据
+     */
+    public byte[] encodeWithExpire(Object value, LocalDateTime expireTime) {
+        if (writer == legacyCodec) {
+            RedisData redisData = new RedisData();
+            redisData.setData(value);
+            redisData.setExpireTime(expireTime);
+            return legacyCodec.encode(redisData);
+        }
+        byte[] inner = writer.encode(value);
+        ByteBuffer buffer = ByteBuffer.allocate(inner.length + 9);
+        buffer.put(LOGICAL_EXPIRE);
+        buffer.putLong(expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        buffer.put(inner);
+        return buffer.array();
+    }
+
+    /**
+     * 解码逻辑过期数据，返回的RedisData中data已经是目标类型
+     */
+    public <T> RedisData decodeWithExpire(byte[] bytes, Class<T> type) {
+        bytes = unstamp(bytes);
+        RedisData redisData = new RedisData();
+        if (bytes[0] == LOGICAL_EXPIRE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.get();
+            long expireMillis = buffer.getLong();
+            byte[] inner = new byte[bytes.length - 9];
+            buffer.get(inner);
+            redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireMillis), ZoneId.systemDefault()));
+            redisData.setData(decode(inner, type));
+            return redisData;
+        }
+        // 旧格式：Hutool JSON 序列化的RedisData
+        RedisData legacy = JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), RedisData.class);
+        redisData.setExpireTime(legacy.getExpireTime());
+        redisData.setData(JSONUtil.toBean((JSONObject) legacy.getData(), type));
+        return redisData;
+    }
+
+    private CacheCodec codecOf(byte id) {
+        switch (id) {
+            case BinaryCacheCodec.ID:
+                return binaryCodec;
+            case JsonCacheCodec.ID:
+                return jsonCodec;
+            default:
+                return legacyCodec;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.hmdp.cache.codec;
+
+import cn.hutool.json.JSONUtil;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 旧格式（Hutool JSON，无类型头）解码器，仅用于读取迁移前写入的数据
+ */
+public class LegacyJsonCacheCodec implements CacheCodec {
+
+    /**
+     * 旧数据没有类型头，标识仅用于配置
+     */
+    public static final byte ID = 0x00;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        String json = new String(bytes, StandardCharsets.UTF_8);
+        if (type.isArray()) {
+            // 列表类缓存以数组类型读取
+            List<?> list = JSONUtil.toList(json, type.getComponentType());
+            return (T) list.toArray((Object[]) Array.newInstance(type.getComponentType(), list.size()));
+        }
+        return JSONUtil.toBean(json, type);
+    }
+}
@@ -0,0 +1,195 @@
+package com.hmdp.cache.metrics;
+
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hmdp.cache.region.CacheRegion;
+import com.hmdp.cache.region.CacheRegionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存指标
+ * 按缓存分区和层级（L1本地缓存、L2 Redis、DB）统计命中/未命中次数和耗时分布，
+ * 另外统计互斥锁竞争和缓存重建耗时；通过/cache/stats查询，并按cache.metrics.log-interval定期输出一行JSON日志
+ */
+@Slf4j
+@Component
+public class CacheMetrics {
+
+    @Resource
+    private CacheRegionRegistry cacheRegionRegistry;
+
+    @Resource
+    @Qualifier("hotKeyCache")
+    private Cache<String, Object> hotKeyCache;
+
+    private final Map<String, RegionMetrics> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 本地缓存查询结果（热点缓存 + 分区缓存）
+     */
+    public void l1(String key, boolean hit) {
+        RegionMetrics metrics = of(key);
+        (hit ? metrics.l1Hit : metrics.l1Miss).increment();
+    }
+
+    /**
+     * Redis读取结果
+     * @param bytes 读到的原始数据，null表示未命中，去掉版本包装后为空表示空值标记
+     */
+    public void l2(String key, byte[] bytes, boolean nullMarker, long nanos) {
+        RegionMetrics metrics = of(key);
+        if (bytes == null) {
+            metrics.l2Miss.increment();
+        } else if (nullMarker) {
+            metrics.l2NullHit.increment();
+        } else {
+            metrics.l2Hit.increment();
+        }
+        metrics.l2Latency.record(nanos);
+    }
+
+    /**
+     * Redis不可用（熔断或调用失败）
+     */
+    public void l2Error(String key) {
+        of(key).l2Error.increment();
+    }
+
+    /**
+     * 批量读取Redis（一次MGET记录一个耗时样本）
+     */
+    public void l2Batch(String key, int hits, int misses, long nanos) {
+        RegionMetrics metrics = of(key);
+        metrics.l2Hit.add(hits);
+        metrics.l2Miss.add(misses);
+        metrics.l2Latency.record(nanos);
+    }
+
+    /**
+     * 数据库查询（批量查询记录一个耗时样本）
+     */
+    public void db(String key, int found, int missing, long nanos) {
+        RegionMetrics metrics = of(key);
+        metrics.dbFound.add(found);
+        metrics.dbMissing.add(missing);
+        metrics.dbLatency.record(nanos);
+    }
+
+    /**
+     * 重建互斥锁竞争结果
+     */
+    public void lock(String key, boolean acquired) {
+        RegionMetrics metrics = of(key);
+        (acquired ? metrics.lockAcquired : metrics.lockContended).increment();
+    }
+
+    /**
+     * 等待其他节点重建超时
+     */
+    public void lockTimeout(String key) {
+        of(key).lockTimeout.increment();
+    }
+
+    /**
+     * 缓存重建耗时（查询数据库 + 写入Redis）
+     */
+    public void rebuild(String key, long nanos) {
+        of(key).rebuildLatency.record(nanos);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (CacheRegion region : cacheRegionRegistry.regions()) {
+            RegionMetrics metrics = regions.get(region.getName());
+            Map<String, Object> item = metrics == null ? new LinkedHashMap<>() : metrics.stats();
+            CacheStats caffeine = region.getCache().stats();
+            item.put("caffeine", caffeineStats(caffeine, region.getCache().estimatedSize()));
+            stats.put(region.getName(), item);
+        }
+        stats.put("hotKeyCache", caffeineStats(hotKeyCache.stats(), hotKeyCache.estimatedSize()));
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${cache.metrics.log-interval:60000}")
+    public void log() {
+        log.info("cache-metrics {}", JSONUtil.toJsonStr(stats()));
+    }
+
+    private RegionMetrics of(String key) {
+        return regions.computeIfAbsent(cacheRegionRegistry.regionOf(key).getName(), name -> new RegionMetrics());
+    }
+
+    private static Map<String, Object> caffeineStats(CacheStats cs, long size) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("hitRate", cs.hitRate());
+        stats.put("evictionCount", cs.evictionCount());
+        return stats;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+
+    private static class RegionMetrics {
+        private final LongAdder l1Hit = new LongAdder();
+        private final LongAdder l1Miss = new LongAdder();
+        private final LongAdder l2Hit = new LongAdder();
+        private final LongAdder l2NullHit = new LongAdder();
+        private final LongAdder l2Miss = new LongAdder();
+        private final LongAdder l2Error = new LongAdder();
+        private final LatencyHistogram l2Latency = new LatencyHistogram();
+        private final LongAdder dbFound = new LongAdder();
+        private final LongAdder dbMissing = new LongAdder();
+        private final LatencyHistogram dbLatency = new LatencyHistogram();
+        private final LongAdder lockAcquired = new LongAdder();
+        private final LongAdder lockContended = new LongAdder();
+        private final LongAdder lockTimeout = new LongAdder();
+        private final LatencyHistogram rebuildLatency = new LatencyHistogram();
+
+        Map<String, Object> stats() {
+            Map<String, Object> l1 = new LinkedHashMap<>();
+            long l1Hits = l1Hit.sum();
+            l1.put("hit", l1Hits);
+            l1.put("miss", l1Miss.sum());
+            l1.put("hitRate", ratio(l1Hits, l1Hits + l1Miss.sum()));
+
+            Map<String, Object> l2 = new LinkedHashMap<>();
+            long l2Hits = l2Hit.sum() + l2NullHit.sum();
+            l2.put("hit", l2Hit.sum());
+            l2.put("nullHit", l2NullHit.sum());
+            l2.put("miss", l2Miss.sum());
+            l2.put("error", l2Error.sum());
+            l2.put("hitRate", ratio(l2Hits, l2Hits + l2Miss.sum()));
+            l2.put("latency", l2Latency.stats());
+
+            Map<String, Object> db = new LinkedHashMap<>();
+            db.put("found", dbFound.sum());
+            db.put("missing", dbMissing.sum());
+            db.put("latency", dbLatency.stats());
+
+            Map<String, Object> lock = new LinkedHashMap<>();
+            lock.put("acquired", lockAcquired.sum());
+            lock.put("contended", lockContended.sum());
+            lock.put("timeout", lockTimeout.sum());
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("l1", l1);
+            stats.put("l2", l2);
+            stats.put("db", db);
+            stats.put("lock", lock);
+            stats.put("rebuild", rebuildLatency.stats());
+            return stats;
+        }
+    }
+}
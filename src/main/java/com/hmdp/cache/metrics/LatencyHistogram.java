@@ -0,0 +1,90 @@
+package com.hmdp.cache.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图
+ * 按微秒的2的幂分桶（[0,1], (1,2], (2,4] ... 约67秒以上归入最后一个桶），记录只有一次LongAdder累加，
+ * 分位数取所在桶的上界，误差不超过2倍，足够用来比较不同层级、不同配置的耗时分布
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 28;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets[bucketOf(micros)].increment();
+        count.increment();
+        totalMicros.add(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * 分位数（微秒），取所在桶的上界，没有样本时返回0
+     * @param quantile 0~1
+     */
+    public long percentileMicros(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long n = count.sum();
+        stats.put("count", n);
+        stats.put("avgMicros", n == 0 ? 0 : totalMicros.sum() / n);
+        stats.put("p50Micros", percentileMicros(0.5));
+        stats.put("p95Micros", percentileMicros(0.95));
+        stats.put("p99Micros", percentileMicros(0.99));
+        stats.put("maxMicros", maxMicros.get());
+        return stats;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
@@ -0,0 +1,229 @@
+package com.hmdp.cache.region;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hmdp.cache.codec.BinaryCacheCodec;
+import com.hmdp.cache.codec.CacheCodec;
+import com.hmdp.cache.codec.JsonCacheCodec;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存分区：一个key前缀对应的本地缓存实例和过期策略
+ * 本地缓存条目的过期时间 = min(expire-after-write, Redis过期时间 * l1-ttl-ratio)，
+ * 空值标记额外受null-ttl限制，避免大量不存在的key长时间占用本地缓存；
+ * 非空数据同时写入stale缓存，本地缓存过期后仍保留stale-ttl，Redis熔断时作为降级数据返回。
+ * maximumBytes大于0时按weigher估算的字节数淘汰，否则按条数淘汰；开启stale缓存时分区容量按stale-share拆分，
+ * stale缓存占stale-share、正常缓存占其余部分，两者合计不超过分区容量（heap-budget分给分区的份额）。
+ * 配置off-heap-size后，堆内因容量淘汰的条目用二进制编解码器序列化后降级到堆外存储，
+ * 堆内未命中时从堆外取出反序列化并提升回堆内（只支持二进制编码的类型，空值标记不降级）
+ */
+@Getter
+public class CacheRegion {
+
+    private final String name;
+    private final String prefix;
+    private final CacheRegionProperties.Region config;
+    private final Cache<String, Object> cache;
+    private final Cache<String, Object> staleCache;
+    private final Duration maxLocalTtl;
+    private final double localTtlRatio;
+    private final Duration nullTtl;
+    private final Duration l2Ttl;
+    private final long maximumBytes;
+    private final OffHeapStore offHeap;
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+
+    private static final CacheCodec OFF_HEAP_CODEC = new BinaryCacheCodec(new JsonCacheCodec());
+
+    public CacheRegion(String name, CacheRegionProperties.Region config, CacheWeigher weigher, long maximumBytes) {
+        this.name = name;
+        this.prefix = config.getPrefix();
+        this.config = config;
+        this.maxLocalTtl = config.getExpireAfterWrite();
+        this.localTtlRatio = config.getL1TtlRatio();
+        this.nullTtl = config.getNullTtl();
+        this.l2Ttl = config.getL2Ttl();
+        this.maximumBytes = maximumBytes;
+        this.offHeap = config.getOffHeapSize() == null ? null : new OffHeapStore(config.getOffHeapSize().toBytes());
+        double staleShare = config.getStaleTtl().isZero() ? 0 : config.getStaleShare();
+        this.cache = bounded(config, weigher, 1 - staleShare)
+                .evictionListener(this::onEviction)
+                .expireAfter(new LocalExpiry(maxLocalTtl))
+                .recordStats()
+                .build();
+        this.staleCache = staleShare <= 0 ? null : bounded(config, weigher, staleShare)
+                .expireAfterWrite(config.getStaleTtl())
+                .build();
+    }
+
+    /**
+     * @param share 占分区容量（字节数或条数）的比例
+     */
+    @SuppressWarnings("unchecked")
+    private Caffeine<String, Object> bounded(CacheRegionProperties.Region config, CacheWeigher weigher, double share) {
+        if (maximumBytes <= 0) {
+            return (Caffeine<String, Object>) (Caffeine<?, ?>) Caffeine.newBuilder()
+                    .maximumSize(Math.max(1, (long) (config.getMaximumSize() * share)));
+        }
+        return Caffeine.newBuilder().maximumWeight(Math.max(1, (long) (maximumBytes * share))).weigher(weigher::weigh);
+    }
+
+    /**
+     * 写入本地缓存，非空数据同时保留一份降级用的旧数据
+     */
+    public void put(String key, Object value, long ttlNanos) {
+        LocalExpiry.put(cache, key, value, ttlNanos);
+        if (staleCache != null && !"".equals(value)) {
+            staleCache.put(key, value);
+        }
+    }
+
+    /**
+     * 读取本地缓存，堆内未命中时尝试从堆外提升
+     */
+    public Object get(String key) {
+        Object value = cache.getIfPresent(key);
+        if (value != null || offHeap == null) {
+            return value;
+        }
+        long[] ttl = new long[1];
+        // 在compute中提升，与invalidate对同一个key互斥（invalidate在同一个compute中删除堆内和堆外），删除后不会再把旧数据放回堆内
+        value = cache.asMap().compute(key, (k, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            OffHeapStore.Entry entry = offHeap.remove(k);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                Object decoded = OFF_HEAP_CODEC.decode(entry.bytes, entry.type);
+                ttl[0] = entry.remainingNanos;
+                return decoded;
+            } catch (RuntimeException e) {
+                // 类结构变化等原因解码失败，按未命中处理
+                return null;
+            }
+        });
+        if (ttl[0] > 0) {
+            promotions.increment();
+            cache.policy().expireVariably().ifPresent(expiration -> expiration.setExpiresAfter(key, ttl[0], TimeUnit.NANOSECONDS));
+        }
+        return value;
+    }
+
+    /**
+     * 降级读取：本地缓存已过期但仍在保留期内的数据
+     */
+    public Object getStale(String key) {
+        return staleCache == null ? null : staleCache.getIfPresent(key);
+    }
+
+    public void invalidate(String key) {
+        if (offHeap == null) {
+            cache.invalidate(key);
+        } else {
+            // 堆内和堆外在同一个compute中删除，与get中的提升互斥：提升要么在删除前完成（随后被删除），要么取不到堆外数据
+            cache.asMap().compute(key, (k, existing) -> {
+                offHeap.invalidate(k);
+                return null;
+            });
+        }
+        if (staleCache != null) {
+            staleCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 清空本地缓存（保留降级用的stale数据）
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+    }
+
+    /**
+     * Redis过期时间（秒）：分区配置了l2-ttl时以配置为准，否则使用调用方传入的值
+     */
+    public long l2TtlSeconds(Long timeout, TimeUnit unit) {
+        return l2Ttl != null ? l2Ttl.getSeconds() : unit.toSeconds(timeout);
+    }
+
+    /**
+     * 本地缓存条目的过期时间（纳秒）
+     * @param nullValue 是否为空值标记
+     * @param timeout 调用方传入的Redis过期时间
+     */
+    public long localTtlNanos(boolean nullValue, Long timeout, TimeUnit unit) {
+        long max = maxLocalTtl.toNanos();
+        long ttl = max;
+        if (localTtlRatio > 0) {
+            ttl = Math.min(max, (long) (TimeUnit.SECONDS.toNanos(l2TtlSeconds(timeout, unit)) * localTtlRatio));
+        }
+        return nullValue ? Math.min(ttl, nullTtl.toNanos()) : ttl;
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats cs = cache.stats();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("prefix", prefix);
+        stats.put("size", cache.estimatedSize());
+        stats.put("hitCount", cs.hitCount());
+        stats.put("missCount", cs.missCount());
+        stats.put("hitRate", cs.hitRate());
+        stats.put("evictionCount", cs.evictionCount());
+        stats.put("evictionBytes", maximumBytes > 0 ? cs.evictionWeight() : null);
+        stats.put("maximumBytes", maximumBytes > 0 ? maximumBytes : null);
+        stats.put("liveBytes", weightedSize(cache));
+        stats.put("staleBytes", staleCache == null ? null : weightedSize(staleCache));
+        stats.put("l2TtlSeconds", l2Ttl == null ? null : l2Ttl.getSeconds());
+        stats.put("staleSize", staleCache == null ? 0 : staleCache.estimatedSize());
+        if (offHeap != null) {
+            Map<String, Object> offHeapStats = offHeap.stats();
+            offHeapStats.put("demotions", demotions.sum());
+            offHeapStats.put("promotions", promotions.sum());
+            stats.put("offHeap", offHeapStats);
+        }
+        return stats;
+    }
+
+    /**
+     * 堆内因容量淘汰时降级到堆外（在淘汰该条目的原子操作内同步执行），
+     * 堆外存活时间取该条目写入时可能的最长本地过期时间
+     */
+    private void onEviction(String key, Object value, RemovalCause cause) {
+        if (offHeap == null || cause != RemovalCause.SIZE || value == null || "".equals(value)) {
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = OFF_HEAP_CODEC.encode(value);
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (bytes.length == 0 || bytes[0] != BinaryCacheCodec.ID) {
+            return;
+        }
+        long ttlNanos = l2Ttl != null ? localTtlNanos(false, l2Ttl.getSeconds(), TimeUnit.SECONDS) : maxLocalTtl.toNanos();
+        if (offHeap.put(key, bytes, value.getClass(), ttlNanos)) {
+            demotions.increment();
+        }
+    }
+
+    private static Long weightedSize(Cache<String, Object> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().isPresent() ? eviction.weightedSize().getAsLong() : null)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.hmdp.cache.region;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存分区配置（cache.regions），每个key前缀一个分区
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache")
+public class CacheRegionProperties {
+
+    private List<Region> regions = new ArrayList<>();
+
+    /**
+     * 所有分区本地缓存的堆内存总预算，配置后各分区按字节数而不是条数淘汰；
+     * 配置了maximum-weight的分区使用各自的值，其余分区按weight-share瓜分剩余预算
+     */
+    private DataSize heapBudget;
+
+    @Data
+    public static class Region {
+        /**
+         * 分区名称，用于统计输出
+         */
+        private String name;
+        /**
+         * key前缀，空字符串表示默认分区
+         */
+        private String prefix = "";
+        /**
+         * 本地缓存最大条数（未配置heap-budget和maximum-weight时生效）
+         */
+        private long maximumSize = 500;
+        /**
+         * 本地缓存最大字节数（估算值），优先于heap-budget的分配
+         */
+        private DataSize maximumWeight;
+        /**
+         * 瓜分heap-budget时的权重
+         */
+        private int weightShare = 1;
+        /**
+         * 本地缓存条目的最长存活时间（未指定过期时间写入时的默认值）
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+        /**
+         * 本地缓存过期时间占Redis过期时间的比例，小于等于0表示固定使用expire-after-write
+         */
+        private double l1TtlRatio = 0.2;
+        /**
+         * 空值标记在本地缓存中的最长存活时间
+         */
+        private Duration nullTtl = Duration.ofSeconds(10);
+        /**
+         * 本地缓存数据过期后继续保留的时间，Redis不可用时用于返回旧数据（stale-if-error），0表示不保留
+         */
+        private Duration staleTtl = Duration.ofMinutes(30);
+        /**
+         * stale缓存占分区容量的比例，正常缓存使用剩余部分
+         */
+        private double staleShare = 0.25;
+        /**
+         * Redis过期时间，不配置时使用调用方传入的过期时间
+         */
+        private Duration l2Ttl;
+        /**
+         * 堆外存储容量，配置后堆内按容量淘汰的条目序列化后降级到堆外，命中时再提升回堆内；不配置表示不启用
+         */
+        private DataSize offHeapSize;
+        /**
+         * Redis过期时间的随机抖动比例，0.1表示在±10%内随机，避免同一批写入的key同时过期
+         */
+        private double ttlJitter;
+        /**
+         * 是否按读写频率自适应调整Redis过期时间：读多写少的key延长，频繁更新的key缩短
+         */
+        private boolean adaptiveTtl;
+        /**
+         * 自适应过期时间的下限，不配置时为基准过期时间的1/4
+         */
+        private Duration minTtl;
+        /**
+         * 自适应过期时间的上限，不配置时为基准过期时间的4倍
+         */
+        private Duration maxTtl;
+    }
+}
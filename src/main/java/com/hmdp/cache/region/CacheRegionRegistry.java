@@ -0,0 +1,109 @@
+package com.hmdp.cache.region;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存分区注册表
+ * 按cache.regions配置为每个key前缀创建独立的Caffeine实例，key通过前缀树按最长前缀匹配到分区，
+ * 没有匹配的key落到默认分区（prefix为空），避免不同业务在同一个本地缓存里互相挤占容量。
+ * 配置cache.heap-budget后，未单独配置maximum-weight的分区按weight-share瓜分剩余预算
+ */
+@Slf4j
+@Component
+public class CacheRegionRegistry {
+
+    private static final String DEFAULT_REGION = "default";
+
+    @Resource
+    private CacheRegionProperties properties;
+
+    @Resource
+    private CacheWeigher weigher;
+
+    private final PrefixTrie<CacheRegion> trie = new PrefixTrie<>();
+    private final List<CacheRegion> regions = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        List<CacheRegionProperties.Region> configs = new ArrayList<>(properties.getRegions());
+        if (configs.stream().noneMatch(config -> config.getPrefix().isEmpty())) {
+            CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+            config.setName(DEFAULT_REGION);
+            configs.add(config);
+        }
+        long[] budgets = splitBudget(properties.getHeapBudget(), configs);
+        for (int i = 0; i < configs.size(); i++) {
+            register(configs.get(i), budgets[i]);
+        }
+    }
+
+    /**
+     * 计算每个分区的字节上限，0表示按条数限制
+     */
+    static long[] splitBudget(DataSize heapBudget, List<CacheRegionProperties.Region> configs) {
+        long[] budgets = new long[configs.size()];
+        long remaining = heapBudget == null ? 0 : heapBudget.toBytes();
+        int shares = 0;
+        for (int i = 0; i < configs.size(); i++) {
+            DataSize maximumWeight = configs.get(i).getMaximumWeight();
+            if (maximumWeight != null) {
+                budgets[i] = maximumWeight.toBytes();
+                remaining -= budgets[i];
+            } else {
+                shares += configs.get(i).getWeightShare();
+            }
+        }
+        if (heapBudget == null || shares == 0) {
+            return budgets;
+        }
+        if (remaining <= 0) {
+            throw new IllegalStateException("cache.heap-budget不足以分配给未配置maximum-weight的分区");
+        }
+        for (int i = 0; i < configs.size(); i++) {
+            if (configs.get(i).getMaximumWeight() == null) {
+                budgets[i] = remaining * configs.get(i).getWeightShare() / shares;
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * key所属的分区
+     */
+    public CacheRegion regionOf(String key) {
+        return trie.match(key);
+    }
+
+    public List<CacheRegion> regions() {
+        return Collections.unmodifiableList(regions);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (CacheRegion region : regions) {
+            stats.put(region.getName(), region.stats());
+        }
+        return stats;
+    }
+
+    private void register(CacheRegionProperties.Region config, long maximumBytes) {
+        String name = config.getName() != null ? config.getName() : config.getPrefix();
+        CacheRegion region = new CacheRegion(name, config, weigher, maximumBytes);
+        trie.put(config.getPrefix(), region);
+        regions.add(region);
+        log.info("缓存分区: name={}, prefix={}, {}, expireAfterWrite={}, l1TtlRatio={}, nullTtl={}, l2Ttl={}",
+                name, config.getPrefix(),
+                maximumBytes > 0 ? "maximumBytes=" + maximumBytes : "maximumSize=" + config.getMaximumSize(),
+                config.getExpireAfterWrite(), config.getL1TtlRatio(), config.getNullTtl(), config.getL2Ttl());
+    }
+}
@@ -0,0 +1,13 @@
+package com.hmdp.cache.region;
+
+/**
+ * 本地缓存条目的字节数估算，用于按堆内存而不是条数限制本地缓存
+ * 默认实现为EstimatingCacheWeigher，可以声明自己的@Primary实现替换
+ */
+public interface CacheWeigher {
+
+    /**
+     * 估算一个缓存条目（key + value）占用的堆内存字节数
+     */
+    int weigh(String key, Object value);
+}
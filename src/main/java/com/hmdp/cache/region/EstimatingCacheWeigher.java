@@ -0,0 +1,138 @@
+package com.hmdp.cache.region;
+
+import com.hmdp.utils.RedisData;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按64位JVM（开启压缩指针）的对象布局估算字节数
+ * 实体对象 = 对象头 + 各字段大小，引用字段再加上被引用对象的大小（String、包装类型、时间类型）；
+ * 只展开一层，集合等复杂字段按固定大小估算，结果按8字节对齐。估算值偏保守，只用于容量控制
+ */
+@Component
+public class EstimatingCacheWeigher implements CacheWeigher {
+
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    /**
+     * Caffeine节点 + 哈希表槽位等每个条目的固定开销
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+    /**
+     * 无法估算的引用对象按该大小计算
+     */
+    private static final int UNKNOWN_OBJECT = 64;
+
+    private static final Map<Class<?>, Integer> FIXED_SIZES = new HashMap<>();
+
+    static {
+        FIXED_SIZES.put(Long.class, 16);
+        FIXED_SIZES.put(Integer.class, 16);
+        FIXED_SIZES.put(Short.class, 16);
+        FIXED_SIZES.put(Byte.class, 16);
+        FIXED_SIZES.put(Boolean.class, 16);
+        FIXED_SIZES.put(Double.class, 16);
+        FIXED_SIZES.put(Float.class, 16);
+        FIXED_SIZES.put(LocalDate.class, 24);
+        FIXED_SIZES.put(LocalTime.class, 24);
+        // LocalDateTime + LocalDate + LocalTime
+        FIXED_SIZES.put(LocalDateTime.class, 72);
+    }
+
+    private final Map<Class<?>, Field[]> fieldCache = new ConcurrentHashMap<>();
+
+    @Override
+    public int weigh(String key, Object value) {
+        long bytes = ENTRY_OVERHEAD + stringSize(key) + objectSize(value, true);
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private long objectSize(Object value, boolean expand) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return stringSize((String) value);
+        }
+        Integer fixed = FIXED_SIZES.get(value.getClass());
+        if (fixed != null) {
+            return fixed;
+        }
+        if (value instanceof RedisData) {
+            // 逻辑过期方案的本地缓存条目：包装对象 + 过期时间 + 展开的数据对象
+            RedisData redisData = (RedisData) value;
+            return align(HEADER + 2 * REFERENCE) + objectSize(redisData.getExpireTime(), false)
+                    + objectSize(redisData.getData(), expand);
+        }
+        if (!expand || value instanceof Collection || value instanceof Map || value.getClass().isArray()) {
+            return UNKNOWN_OBJECT;
+        }
+        long size = HEADER;
+        try {
+            for (Field field : fieldsOf(value.getClass())) {
+                Class<?> type = field.getType();
+                if (type.isPrimitive()) {
+                    size += primitiveSize(type);
+                } else {
+                    size += REFERENCE + objectSize(field.get(value), false);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            return UNKNOWN_OBJECT;
+        }
+        return align(size);
+    }
+
+    private static long stringSize(String s) {
+        // String对象 + byte[]，含非Latin1字符时按UTF-16每字符2字节
+        int length = s.length();
+        boolean latin1 = true;
+        for (int i = 0; i < length && latin1; i++) {
+            latin1 = s.charAt(i) <= 0xFF;
+        }
+        return 24 + align(16 + (long) length * (latin1 ? 1 : 2));
+    }
+
+    private Field[] fieldsOf(Class<?> type) {
+        return fieldCache.computeIfAbsent(type, t -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = t; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        });
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,49 @@
+package com.hmdp.cache.region;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存的按条目过期策略
+ * 通过put(cache, key, value, ttl)写入的条目使用各自的过期时间，普通put使用默认过期时间，读取不延长过期时间
+ */
+public class LocalExpiry implements Expiry<String, Object> {
+
+    private final long defaultNanos;
+
+    public LocalExpiry(Duration defaultTtl) {
+        this.defaultNanos = defaultTtl.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(String key, Object value, long currentTime) {
+        return defaultNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+        return defaultNanos;
+    }
+
+    @Override
+    public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    /**
+     * 按指定过期时间写入，缓存未使用按条目过期策略时退化为普通put
+     */
+    public static void put(Cache<String, Object> cache, String key, Object value, long ttlNanos) {
+        Optional<Policy.VarExpiration<String, Object>> expiration = cache.policy().expireVariably();
+        if (expiration.isPresent()) {
+            expiration.get().put(key, value, ttlNanos, TimeUnit.NANOSECONDS);
+        } else {
+            cache.put(key, value);
+        }
+    }
+}
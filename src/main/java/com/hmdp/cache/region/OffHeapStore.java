@@ -0,0 +1,314 @@
+package com.hmdp.cache.region;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外存储（slab分配）
+ * 直接内存按1MB分页申请，每页专属一个大小级别（64B ~ 1MB，按2的幂分级），页内切成等长的块；
+ * 条目只保存序列化后的字节，索引（key -> 块地址）在堆内，数据不参与GC扫描。
+ * 容量用满后按LRU淘汰同一大小级别的条目（每个级别一个按访问顺序排列的队列，取队首，O(1)）；
+ * 该级别没有可淘汰的条目时（页都分给了其他级别），回收一页改切成该级别：优先回收没有存活条目的页，
+ * 否则回收其他级别中最久未写入的条目所在的页，页内条目全部淘汰，避免负载变化后新级别永远分配不到空间。
+ * 超过1MB的条目不保存。
+ * 所有操作串行执行（读写都是一次内存拷贝），只在本地缓存未命中时访问
+ */
+public class OffHeapStore {
+
+    static final int PAGE_SIZE = 1 << 20;
+    private static final int MIN_SHIFT = 6;
+    private static final int MAX_SHIFT = 20;
+
+    private final long capacity;
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private final List<PageInfo> pageInfos = new ArrayList<>();
+    private final List<ArrayDeque<Long>> freeBlocks = new ArrayList<>();
+    private final Map<String, Slot> index = new HashMap<>(256);
+    /**
+     * 每个大小级别按访问顺序排列的条目，头部是该级别最久未访问的条目
+     */
+    private final List<LinkedHashMap<String, Slot>> lru = new ArrayList<>();
+
+    private long usedBytes;
+    private long evictions;
+    private long rejections;
+    private long reclaims;
+    private long writes;
+
+    public OffHeapStore(long capacity) {
+        if (capacity < PAGE_SIZE) {
+            throw new IllegalArgumentException("堆外存储容量不能小于" + PAGE_SIZE + "字节");
+        }
+        this.capacity = capacity;
+        for (int shift = MIN_SHIFT; shift <= MAX_SHIFT; shift++) {
+            freeBlocks.add(new ArrayDeque<>());
+            lru.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+    }
+
+    /**
+     * 写入条目，空间不足且无法淘汰或回收出空间时放弃写入
+     * @param type 反序列化时使用的类型
+     * @param ttlNanos 条目存活时间
+     * @return 是否写入成功
+     */
+    public synchronized boolean put(String key, byte[] bytes, Class<?> type, long ttlNanos) {
+        release(unlink(key));
+        int sizeClass = sizeClassOf(bytes.length);
+        if (sizeClass < 0) {
+            rejections++;
+            return false;
+        }
+        Long address = allocate(sizeClass);
+        if (address == null) {
+            rejections++;
+            return false;
+        }
+        ByteBuffer page = pages.get(pageOf(address)).duplicate();
+        page.position(offsetOf(address));
+        page.put(bytes);
+        Slot slot = new Slot(address, bytes.length, sizeClass, type, System.nanoTime() + ttlNanos, ++writes);
+        pageInfos.get(pageOf(address)).bind(blockOf(slot), key);
+        index.put(key, slot);
+        lru.get(sizeClass).put(key, slot);
+        usedBytes += bytes.length;
+        return true;
+    }
+
+    /**
+     * 取出并删除条目（提升回堆内），不存在或已过期返回null
+     */
+    public synchronized Entry remove(String key) {
+        Slot slot = unlink(key);
+        if (slot == null) {
+            return null;
+        }
+        release(slot);
+        long remaining = slot.expireAt - System.nanoTime();
+        if (remaining <= 0) {
+            return null;
+        }
+        byte[] bytes = new byte[slot.length];
+        ByteBuffer page = pages.get(pageOf(slot.address)).duplicate();
+        page.position(offsetOf(slot.address));
+        page.get(bytes);
+        return new Entry(bytes, slot.type, remaining);
+    }
+
+    public synchronized void invalidate(String key) {
+        release(unlink(key));
+    }
+
+    public synchronized void clear() {
+        new ArrayList<>(index.keySet()).forEach(key -> release(unlink(key)));
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", index.size());
+        stats.put("capacityBytes", capacity);
+        stats.put("allocatedBytes", (long) pages.size() * PAGE_SIZE);
+        stats.put("usedBytes", usedBytes);
+        stats.put("evictionCount", evictions);
+        stats.put("rejectionCount", rejections);
+        stats.put("reclaimCount", reclaims);
+        return stats;
+    }
+
+    private Long allocate(int sizeClass) {
+        ArrayDeque<Long> free = freeBlocks.get(sizeClass);
+        if (free.isEmpty() && (long) (pages.size() + 1) * PAGE_SIZE <= capacity) {
+            carvePage(sizeClass);
+        }
+        if (free.isEmpty()) {
+            evictOne(sizeClass);
+        }
+        if (free.isEmpty()) {
+            reclaimPage(sizeClass);
+        }
+        return free.poll();
+    }
+
+    /**
+     * 申请新页并按大小级别切块
+     */
+    private void carvePage(int sizeClass) {
+        pages.add(ByteBuffer.allocateDirect(PAGE_SIZE));
+        pageInfos.add(new PageInfo(sizeClass));
+        slice(pages.size() - 1, sizeClass);
+    }
+
+    private void slice(int pageIndex, int sizeClass) {
+        int blockSize = blockSizeOf(sizeClass);
+        for (int offset = 0; offset + blockSize <= PAGE_SIZE; offset += blockSize) {
+            freeBlocks.get(sizeClass).add(addressOf(pageIndex, offset));
+        }
+    }
+
+    /**
+     * 从其他级别回收一页改切成指定级别：优先选没有存活条目的页，
+     * 否则选其他级别中最久未写入的条目所在的页，淘汰页内所有条目
+     */
+    private void reclaimPage(int sizeClass) {
+        int victimPage = -1;
+        for (int i = 0; i < pageInfos.size() && victimPage < 0; i++) {
+            PageInfo info = pageInfos.get(i);
+            if (info.sizeClass != sizeClass && info.live == 0) {
+                victimPage = i;
+            }
+        }
+        if (victimPage < 0) {
+            Slot oldest = null;
+            for (int c = 0; c < lru.size(); c++) {
+                if (c == sizeClass || lru.get(c).isEmpty()) {
+                    continue;
+                }
+                Slot head = lru.get(c).values().iterator().next();
+                if (oldest == null || head.sequence < oldest.sequence) {
+                    oldest = head;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            victimPage = pageOf(oldest.address);
+        }
+
+        PageInfo info = pageInfos.get(victimPage);
+        for (String key : info.keys) {
+            if (key != null) {
+                release(unlink(key));
+                evictions++;
+            }
+        }
+        int page = victimPage;
+        freeBlocks.get(info.sizeClass).removeIf(address -> pageOf(address) == page);
+        pageInfos.set(victimPage, new PageInfo(sizeClass));
+        slice(victimPage, sizeClass);
+        reclaims++;
+    }
+
+    /**
+     * 淘汰同级别中最久未访问的条目（队首）
+     */
+    private void evictOne(int sizeClass) {
+        Iterator<Map.Entry<String, Slot>> it = lru.get(sizeClass).entrySet().iterator();
+        if (!it.hasNext()) {
+            return;
+        }
+        Map.Entry<String, Slot> victim = it.next();
+        it.remove();
+        index.remove(victim.getKey());
+        release(victim.getValue());
+        evictions++;
+    }
+
+    /**
+     * 从索引和所属级别的队列中移除条目（不释放块）
+     */
+    private Slot unlink(String key) {
+        Slot slot = index.remove(key);
+        if (slot != null) {
+            lru.get(slot.sizeClass).remove(key);
+            pageInfos.get(pageOf(slot.address)).bind(blockOf(slot), null);
+        }
+        return slot;
+    }
+
+    private void release(Slot slot) {
+        if (slot != null) {
+            freeBlocks.get(slot.sizeClass).add(slot.address);
+            usedBytes -= slot.length;
+        }
+    }
+
+    static int sizeClassOf(int length) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, length) - 1));
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    private static int blockSizeOf(int sizeClass) {
+        return 1 << (sizeClass + MIN_SHIFT);
+    }
+
+    private static int blockOf(Slot slot) {
+        return offsetOf(slot.address) >>> (slot.sizeClass + MIN_SHIFT);
+    }
+
+    private static long addressOf(int page, int offset) {
+        return ((long) page << 32) | offset;
+    }
+
+    private static int pageOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static class Slot {
+        private final long address;
+        private final int length;
+        private final int sizeClass;
+        private final Class<?> type;
+        private final long expireAt;
+        /**
+         * 写入序号，回收页时用来比较不同级别条目的新旧
+         */
+        private final long sequence;
+
+        Slot(long address, int length, int sizeClass, Class<?> type, long expireAt, long sequence) {
+            this.address = address;
+            this.length = length;
+            this.sizeClass = sizeClass;
+            this.type = type;
+            this.expireAt = expireAt;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 页所属的大小级别和每个块上的key（空闲块为null）
+     */
+    private static class PageInfo {
+        private final int sizeClass;
+        private final String[] keys;
+        private int live;
+
+        PageInfo(int sizeClass) {
+            this.sizeClass = sizeClass;
+            this.keys = new String[PAGE_SIZE / blockSizeOf(sizeClass)];
+        }
+
+        void bind(int block, String key) {
+            if (keys[block] == null && key != null) {
+                live++;
+            } else if (keys[block] != null && key == null) {
+                live--;
+            }
+            keys[block] = key;
+        }
+    }
+
+    /**
+     * 取出的条目：序列化字节、类型和剩余存活时间
+     */
+    public static class Entry {
+        public final byte[] bytes;
+        public final Class<?> type;
+        public final long remainingNanos;
+
+        Entry(byte[] bytes, Class<?> type, long remainingNanos) {
+            this.bytes = bytes;
+            this.type = type;
+            this.remainingNanos = remainingNanos;
+        }
+    }
+}
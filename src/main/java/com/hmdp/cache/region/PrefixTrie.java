@@ -0,0 +1,44 @@
+package com.hmdp.cache.region;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字符前缀树，按最长前缀匹配查找key所属的值
+ * 构建完成后只读，查找只沿key走一遍，不随前缀数量增长
+ */
+public class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    public void put(String prefix, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node<>());
+        }
+        node.value = value;
+    }
+
+    /**
+     * 最长前缀匹配，没有任何前缀匹配时返回null
+     */
+    public V match(String key) {
+        Node<V> node = root;
+        V matched = root.value;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.get(key.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                matched = node.value;
+            }
+        }
+        return matched;
+    }
+
+    private static class Node<V> {
+        private final Map<Character, Node<V>> children = new HashMap<>(4);
+        private V value;
+    }
+}
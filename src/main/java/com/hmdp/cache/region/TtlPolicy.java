@@ -0,0 +1,174 @@
+package com.hmdp.cache.region;
+
+import com.hmdp.cache.CacheVersions;
+import com.hmdp.cache.HotKeyDetector;
+import com.hmdp.cache.breaker.L2Guard;
+import com.hmdp.cache.breaker.L2UnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis过期时间策略
+ * 基准过期时间取分区的l2-ttl（或调用方传入的值），分区开启adaptive-ttl时按读写比调整：
+ * 读次数来自HotKeyDetector的访问频率估算；更新次数来自Redis中与版本key同slot的更新计数（{key}:upd），
+ * 只在数据更新时的删除中递增（延迟双删的第二次删除和巡检修复不计数），按update-window固定窗口过期，所有节点看到同一个值。
+ * 读写比 (读 + 1) / ((写 + 1) * read-write-ratio) 大于1时按它延长；窗口内更新多于一次且读写比不足时按 1 / 更新次数 缩短，
+ * 不经常更新的key不会因为读次数少而缩短；结果限制在[min-ttl, max-ttl]内。
+ * 最后按分区的ttl-jitter随机抖动，打散同一批写入（如启动预热）的过期时间
+ */
+@Component
+public class TtlPolicy {
+
+    @Resource
+    private CacheRegionRegistry cacheRegionRegistry;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private L2Guard l2Guard;
+
+    @Value("${cache.ttl-policy.read-write-ratio:100}")
+    private double readWriteRatio;
+
+    @Value("${cache.ttl-policy.min-reads:50}")
+    private long minReads;
+
+    @Value("${cache.ttl-policy.update-window:60}")
+    private long updateWindowSeconds;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 更新计数窗口（秒）
+     */
+    public long updateWindowSeconds() {
+        return updateWindowSeconds;
+    }
+
+    /**
+     * 计算写入Redis时使用的过期时间（秒），分区开启adaptive-ttl时从Redis读取更新次数
+     */
+    public long l2TtlSeconds(String key, Long timeout, TimeUnit unit) {
+        long updates = cacheRegionRegistry.regionOf(key).getConfig().isAdaptiveTtl()
+                ? updatesOf(Collections.singletonList(key)).getOrDefault(key, 0L) : 0;
+        return l2TtlSeconds(key, updates, timeout, unit);
+    }
+
+    /**
+     * 计算写入Redis时使用的过期时间（秒）
+     * @param updates 窗口内的更新次数（批量写入时预先用updatesOf读取）
+     */
+    public long l2TtlSeconds(String key, long updates, Long timeout, TimeUnit unit) {
+        CacheRegion region = cacheRegionRegistry.regionOf(key);
+        CacheRegionProperties.Region config = region.getConfig();
+        long base = region.l2TtlSeconds(timeout, unit);
+        long ttl = base;
+        Counters c = counters.computeIfAbsent(region.getName(), name -> new Counters());
+        if (config.isAdaptiveTtl()) {
+            double factor = adaptiveFactor(hotKeyDetector.estimate(key), updates, readWriteRatio, minReads);
+            long min = config.getMinTtl() != null ? config.getMinTtl().getSeconds() : Math.max(1, base / 4);
+            long max = config.getMaxTtl() != null ? config.getMaxTtl().getSeconds() : base * 4;
+            ttl = Math.max(min, Math.min(max, Math.round(base * factor)));
+            if (ttl > base) {
+                c.lengthened.increment();
+            } else if (ttl < base) {
+                c.shortened.increment();
+            }
+        }
+        if (config.getTtlJitter() > 0) {
+            ttl = jitter(ttl, config.getTtlJitter(), ThreadLocalRandom.current().nextDouble());
+        }
+        c.total.increment();
+        return ttl;
+    }
+
+    /**
+     * 过期时间倍数：读写比超过read-write-ratio时按读写比延长；
+     * 只有窗口内多次更新时才缩短，且只按更新次数缩短（1 / 更新次数），读次数少不会缩短。
+     * 没有更新或只有一次更新（如删除后重建）的key倍数至少为1，读次数不足min-reads时不延长
+     */
+    static double adaptiveFactor(long reads, long updates, double readWriteRatio, long minReads) {
+        if (updates <= 1) {
+            if (reads < minReads) {
+                return 1;
+            }
+            return Math.max(1, (reads + 1.0) / ((updates + 1.0) * readWriteRatio));
+        }
+        double ratio = (reads + 1.0) / ((updates + 1.0) * readWriteRatio);
+        return ratio >= 1 ? ratio : 1.0 / updates;
+    }
+
+    /**
+     * 在 ttl * (1 ± jitter) 内取值
+     * @param random [0, 1)的随机数
+     */
+    static long jitter(long ttl, double jitter, double random) {
+        return Math.max(1, Math.round(ttl * (1 + jitter * (2 * random - 1))));
+    }
+
+    /**
+     * 批量读取开启了adaptive-ttl的key在窗口内的更新次数，Redis不可用时按0处理（不缩短）
+     */
+    public Map<String, Long> updatesOf(Collection<String> keys) {
+        List<String> adaptive = new ArrayList<>();
+        List<String> updateKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (cacheRegionRegistry.regionOf(key).getConfig().isAdaptiveTtl()) {
+                adaptive.add(key);
+                updateKeys.add(CacheVersions.updateKey(key));
+            }
+        }
+        Map<String, Long> updates = new HashMap<>(adaptive.size());
+        if (adaptive.isEmpty()) {
+            return updates;
+        }
+        List<String> values;
+        try {
+            values = l2Guard.call(() -> stringRedisTemplate.opsForValue().multiGet(updateKeys));
+        } catch (L2UnavailableException e) {
+            return updates;
+        }
+        for (int i = 0; i < adaptive.size(); i++) {
+            String value = values == null ? null : values.get(i);
+            if (value != null) {
+                updates.put(adaptive.get(i), Long.parseLong(value));
+            }
+        }
+        return updates;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        counters.forEach((region, c) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("total", c.total.sum());
+            item.put("lengthened", c.lengthened.sum());
+            item.put("shortened", c.shortened.sum());
+            stats.put(region, item);
+        });
+        return stats;
+    }
+
+    private static class Counters {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder lengthened = new LongAdder();
+        private final LongAdder shortened = new LongAdder();
+    }
+}
@@ -0,0 +1,277 @@
+package com.hmdp.cache.warmup;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Shop;
+import com.hmdp.seckill.SeckillStock;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.CacheClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TTL;
+import static com.hmdp.utils.RedisConstants.SHOP_GEO_KEY;
+
+/**
+ * 启动预热
+ * 发布后各节点本地缓存为空，大量店铺详情、附近店铺请求会同时打到Redis/数据库。
+ * 启动时把销量前N的店铺（Redis -> 本地缓存，Redis没有的从数据库加载）、店铺类型、店铺GEO、
+ * 秒杀库存按批次并行加载；作为ApplicationRunner同步执行，预热完成或超出时间预算后
+ * Spring Boot才会发布ReadinessState.ACCEPTING_TRAFFIC，超时未完成的批次继续在后台执行
+ */
+@Slf4j
+@Component
+public class CacheWarmUp implements ApplicationRunner {
+
+    @Value("${cache.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warm-up.top-shops:1000}")
+    private int topShops;
+
+    @Value("${cache.warm-up.batch-size:100}")
+    private int batchSize;
+
+    @Value("${cache.warm-up.parallelism:4}")
+    private int parallelism;
+
+    @Value("${cache.warm-up.time-budget:30000}")
+    private long timeBudgetMillis;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private SeckillStock seckillStock;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, Progress> tasks = new LinkedHashMap<>();
+    private volatile boolean ready;
+    private volatile boolean timedOut;
+    private volatile long elapsedMillis;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "cache-warmup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            submitShops(pool, futures);
+            submitGeo(pool, futures);
+            submit(pool, futures, progress("shopType", 1), () -> {
+                shopTypeService.queryTypeList();
+                return 1;
+            });
+            submitSeckillStock(pool, futures);
+        } catch (Exception e) {
+            log.error("缓存预热任务提交失败", e);
+        }
+        pool.shutdown();
+
+        // 在时间预算内等待所有批次完成
+        long deadline = begin + timeBudgetMillis;
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut = true;
+                break;
+            } catch (Exception e) {
+                // 批次失败已在任务内记录
+            }
+        }
+        elapsedMillis = System.currentTimeMillis() - begin;
+        ready = true;
+        log.info("缓存预热{}: 耗时{}ms, {}", timedOut ? "超出时间预算，剩余批次转入后台" : "完成", elapsedMillis, stats().get("tasks"));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ready", ready);
+        stats.put("timedOut", timedOut);
+        stats.put("elapsedMillis", ready ? elapsedMillis : null);
+        Map<String, Object> progress = new LinkedHashMap<>();
+        synchronized (tasks) {
+            tasks.forEach((name, p) -> progress.put(name, p.toMap()));
+        }
+        stats.put("tasks", progress);
+        return stats;
+    }
+
+    /**
+     * 销量前N的店铺：按批次查询id后走CacheClient.queryBatch，Redis命中的进入本地缓存，未命中的从数据库回源写入Redis。
+     * 店铺详情走互斥锁方案，不读本地缓存，只受益于Redis预热；本地缓存供同样走queryBatch的附近店铺列表命中
+     */
+    private void submitShops(ExecutorService pool, List<Future<?>> futures) {
+        int pages = (topShops + batchSize - 1) / batchSize;
+        Progress progress = progress("shop", pages);
+        for (int i = 1; i <= pages; i++) {
+            long current = i;
+            submit(pool, futures, progress, () -> {
+                List<Long> ids = shopService.query().select("id").orderByDesc("sold")
+                        .page(new Page<>(current, batchSize, false)).getRecords()
+                        .stream().map(Shop::getId).collect(Collectors.toList());
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                return cacheClient.queryBatch(CACHE_SHOP_KEY, ids, Shop.class,
+                        missIds -> shopService.listByIds(missIds).stream()
+                                .collect(Collectors.toMap(Shop::getId, Function.identity())),
+                        CACHE_SHOP_TTL, TimeUnit.MINUTES).size();
+            });
+        }
+    }
+
+    /**
+     * 店铺GEO：按批次读取店铺坐标，按类型GEOADD
+     */
+    private void submitGeo(ExecutorService pool, List<Future<?>> futures) {
+        int total = shopService.count();
+        int pages = (total + batchSize - 1) / batchSize;
+        Progress progress = progress("shopGeo", pages);
+        for (int i = 1; i <= pages; i++) {
+            long current = i;
+            submit(pool, futures, progress, () -> {
+                List<Shop> shops = shopService.query().select("id", "type_id", "x", "y").orderByAsc("id")
+                        .page(new Page<>(current, batchSize, false)).getRecords();
+                Map<Long, List<Shop>> byType = shops.stream().collect(Collectors.groupingBy(Shop::getTypeId));
+                byType.forEach((typeId, list) -> {
+                    List<RedisGeoCommands.GeoLocation<String>> locations = new ArrayList<>(list.size());
+                    for (Shop shop : list) {
+                        locations.add(new RedisGeoCommands.GeoLocation<>(
+                                shop.getId().toString(), new Point(shop.getX(), shop.getY())));
+                    }
+                    stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + typeId, locations);
+                });
+                return shops.size();
+            });
+        }
+    }
+
+    /**
+     * 未结束的秒杀券库存：只在Redis中不存在时写入，已有的库存可能已被扣减，不能用数据库的值覆盖
+     */
+    private void submitSeckillStock(ExecutorService pool, List<Future<?>> futures) {
+        Progress progress = progress("seckillStock", 1);
+        submit(pool, futures, progress, () -> {
+            List<SeckillVoucher> vouchers = seckillVoucherService.query()
+                    .gt("end_time", LocalDateTime.now()).list();
+            int loaded = 0;
+            for (SeckillVoucher voucher : vouchers) {
+                if (seckillStock.initIfAbsent(voucher.getVoucherId(), voucher.getStock())) {
+                    loaded++;
+                }
+            }
+            return loaded;
+        });
+    }
+
+    private Progress progress(String name, int batches) {
+        Progress progress = new Progress(batches);
+        synchronized (tasks) {
+            tasks.put(name, progress);
+        }
+        return progress;
+    }
+
+    private void submit(ExecutorService pool, List<Future<?>> futures, Progress progress, BatchTask task) {
+        futures.add(pool.submit(() -> {
+            try {
+                progress.items.add(task.run());
+                progress.done.incrementAndGet();
+            } catch (Exception e) {
+                progress.failed.incrementAndGet();
+                log.warn("缓存预热批次失败", e);
+            } finally {
+                progress.finish();
+            }
+        }));
+    }
+
+    @FunctionalInterface
+    private interface BatchTask {
+        /**
+         * @return 本批次加载的条数
+         */
+        int run();
+    }
+
+    private static class Progress {
+        private final int batches;
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final LongAdder items = new LongAdder();
+        private final long begin = System.currentTimeMillis();
+        private volatile long end;
+
+        Progress(int batches) {
+            this.batches = batches;
+        }
+
+        void finish() {
+            if (done.get() + failed.get() >= batches) {
+                end = System.currentTimeMillis();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("batches", batches);
+            map.put("done", done.get());
+            map.put("failed", failed.get());
+            map.put("items", items.sum());
+            map.put("millis", (end == 0 ? System.currentTimeMillis() : end) - begin);
+            return map;
+        }
+    }
+}
@@ -2,42 +2,29 @@ package com.hmdp.config;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.hmdp.entity.Shop;
-import com.hmdp.utils.RedisConstants;
+import com.hmdp.cache.region.LocalExpiry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 /**
  * Caffeine本地缓存配置类
+ * 按业务前缀划分的本地缓存由CacheRegionRegistry根据cache.regions配置创建
  */
 @Configuration
 public class CaffeineConfig {
 
     /**
-     * 店铺详情本地缓存
-     * 配置：最大容量1000个，过期时间5分钟（比Redis的30分钟短）
-     * 原因：本地缓存过期后可以从Redis重新加载，避免两级缓存同时失效
+     * 热点key本地缓存
+     * 配置：只存放HotKeyDetector识别出的热点key，不与普通key竞争容量
+     * 条目过期时间在写入时指定：cache.hot-key.local-ttl（默认10分钟），不超过该key的Redis过期时间
      */
-    @Bean(name = "shopCache")
-    public Cache<String, Object> shopCache() {
+    @Bean(name = "hotKeyCache")
+    public Cache<String, Object> hotKeyCache() {
         return Caffeine.newBuilder()
-                .maximumSize(1000) // 最大缓存数量
-                .expireAfterWrite(5, TimeUnit.MINUTES) // 5分钟过期，比Redis短
-                .recordStats() // 开启统计
-                .build();
-    }
-
-    /**
-     * 通用本地缓存
-     * 配置：最大容量500个，过期时间5分钟
-     */
-    @Bean(name = "commonCache")
-    public Cache<String, Object> commonCache() {
-        return Caffeine.newBuilder()
-                .maximumSize(500)
-                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .maximumSize(200)
+                .expireAfter(new LocalExpiry(Duration.ofMinutes(10)))
                 .recordStats()
                 .build();
     }
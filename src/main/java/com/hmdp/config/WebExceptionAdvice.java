@@ -1,6 +1,7 @@
 package com.hmdp.config;
 
 import com.hmdp.dto.Result;
+import com.hmdp.exception.CacheUnavailableException;
 import com.hmdp.exception.SlideWindowLimitException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -16,6 +17,13 @@ public class WebExceptionAdvice {
         return Result.fail(e.getMessage());
     }
 
+    // 处理缓存不可用异常（Redis熔断且降级查库被限流）
+    @ExceptionHandler(CacheUnavailableException.class)
+    public Result handleCacheUnavailableException(CacheUnavailableException e) {
+        log.warn(e.toString());
+        return Result.fail(e.getMessage());
+    }
+
     // 处理其他运行时异常
     @ExceptionHandler(RuntimeException.class)
     public Result handleRuntimeException(RuntimeException e) {
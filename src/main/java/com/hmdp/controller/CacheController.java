@@ -0,0 +1,184 @@
+package com.hmdp.controller;
+
+import com.hmdp.cache.CacheVersions;
+import com.hmdp.cache.HotKeyDetector;
+import com.hmdp.cache.LocalCacheInvalidationBus;
+import com.hmdp.cache.RebuildCostTracker;
+import com.hmdp.cache.SingleFlight;
+import com.hmdp.cache.audit.CacheConsistencyAuditor;
+import com.hmdp.cache.bloom.BloomFilterRegistry;
+import com.hmdp.cache.breaker.L2Guard;
+import com.hmdp.cache.metrics.CacheMetrics;
+import com.hmdp.cache.region.CacheRegionRegistry;
+import com.hmdp.cache.region.TtlPolicy;
+import com.hmdp.cache.warmup.CacheWarmUp;
+import com.hmdp.delay.DelayedTaskScheduler;
+import com.hmdp.dto.Result;
+import com.hmdp.mq.CacheInvalidationOutbox;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * 缓存状态查询接口
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private SingleFlight singleFlight;
+
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Resource
+    private LocalCacheInvalidationBus invalidationBus;
+
+    @Resource
+    private CacheRegionRegistry cacheRegionRegistry;
+
+    @Resource
+    private L2Guard l2Guard;
+
+    @Resource
+    private CacheWarmUp cacheWarmUp;
+
+    @Resource
+    private CacheVersions cacheVersions;
+
+    @Resource
+    private RebuildCostTracker rebuildCostTracker;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private DelayedTaskScheduler delayedTaskScheduler;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private TtlPolicy ttlPolicy;
+
+    @Resource
+    private CacheConsistencyAuditor cacheConsistencyAuditor;
+
+    @Resource
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
+    /**
+     * 单飞加载统计：加载次数、共享次数、正在加载的key及等待线程数
+     */
+    @GetMapping("/single-flight")
+    public Result singleFlight() {
+        return Result.ok(singleFlight.stats());
+    }
+
+    /**
+     * 布隆过滤器元素数量（-1表示尚未构建完成）
+     */
+    @GetMapping("/bloom-filter")
+    public Result bloomFilter() {
+        return Result.ok(bloomFilterRegistry.stats());
+    }
+
+    /**
+     * 本地缓存失效广播统计
+     */
+    @GetMapping("/invalidation")
+    public Result invalidation() {
+        return Result.ok(invalidationBus.stats());
+    }
+
+    /**
+     * 各前缀缓存重建耗时（用于提前刷新窗口的计算）
+     */
+    @GetMapping("/rebuild")
+    public Result rebuild() {
+        return Result.ok(rebuildCostTracker.stats());
+    }
+
+    /**
+     * 当前热点key
+     */
+    @GetMapping("/hotkeys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.stats());
+    }
+
+    /**
+     * 各缓存分区的本地缓存统计
+     */
+    @GetMapping("/regions")
+    public Result regions() {
+        return Result.ok(cacheRegionRegistry.stats());
+    }
+
+    /**
+     * Redis熔断器状态及降级统计
+     */
+    @GetMapping("/breaker")
+    public Result breaker() {
+        return Result.ok(l2Guard.stats());
+    }
+
+    /**
+     * 启动预热进度（ready=false时预热尚未完成）
+     */
+    @GetMapping("/warmup")
+    public Result warmUp() {
+        return Result.ok(cacheWarmUp.stats());
+    }
+
+    /**
+     * 版本号校验统计（被拒绝的旧数据写入）
+     */
+    @GetMapping("/versions")
+    public Result versions() {
+        return Result.ok(cacheVersions.stats());
+    }
+
+    /**
+     * 延迟任务统计（延迟双删等）：待执行、合并、执行、失败、恢复次数
+     */
+    @GetMapping("/delay")
+    public Result delay() {
+        return Result.ok(delayedTaskScheduler.stats());
+    }
+
+    /**
+     * 缓存失效发件箱统计：写入、发布、批次、失败次数
+     */
+    @GetMapping("/outbox")
+    public Result outbox() {
+        return Result.ok(cacheInvalidationOutbox.stats());
+    }
+
+    /**
+     * 按分区和层级（L1/L2/DB）的命中、未命中和耗时分布，以及锁竞争和重建耗时
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        return Result.ok(cacheMetrics.stats());
+    }
+
+    /**
+     * 过期时间策略统计：各分区写入次数、自适应延长/缩短次数
+     */
+    @GetMapping("/ttl")
+    public Result ttl() {
+        return Result.ok(ttlPolicy.stats());
+    }
+
+    /**
+     * 一致性审计统计：抽样数、不一致数、漂移率、修复数、漂移时长
+     */
+    @GetMapping("/audit")
+    public Result audit() {
+        return Result.ok(cacheConsistencyAuditor.stats());
+    }
+}
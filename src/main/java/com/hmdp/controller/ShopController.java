@@ -42,10 +42,8 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库并加入布隆过滤器
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -33,6 +33,26 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 查询秒杀券的剩余库存
+     * @param voucherId 优惠券id
+     * @return 总库存及各分段库存
+     */
+    @GetMapping("seckill/{id}/stock")
+    public Result querySeckillStock(@PathVariable("id") Long voucherId) {
+        return Result.ok(voucherService.seckillStockOf(voucherId));
+    }
+
+    /**
+     * 秒杀券补货
+     * @param voucherId 优惠券id
+     * @param amount 增加的库存数量
+     */
+    @PutMapping("seckill/{id}/stock")
+    public Result restockSeckillVoucher(@PathVariable("id") Long voucherId, @RequestParam("amount") Integer amount) {
+        return voucherService.restockSeckillVoucher(voucherId, amount);
+    }
+
     /**
      * 新增普通券
      * @param voucher 优惠券信息
@@ -0,0 +1,223 @@
+package com.hmdp.delay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 延迟任务调度器
+ * 任务先写入Redis ZSET（member为 类型|参数，score为到期时间），再放入进程内的时间轮；
+ * 同一个任务重复提交只会更新到期时间（合并），到期后通过Lua脚本领取，保证多个节点只执行一次。
+ * 节点重启或宕机后，定时扫描ZSET把即将到期的任务重新装入时间轮。
+ * 业务方通过register注册任务类型的处理器，再调用schedule提交任务
+ */
+@Slf4j
+@Component
+public class DelayedTaskScheduler {
+
+    public static final String ZSET_KEY = "delay:tasks";
+    private static final String SEPARATOR = "|";
+
+    private static final DefaultRedisScript<Long> CLAIM_SCRIPT;
+
+    static {
+        CLAIM_SCRIPT = new DefaultRedisScript<>();
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("delay_claim.lua"));
+        CLAIM_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${delay.tick-millis:100}")
+    private long tickMillis;
+
+    @Value("${delay.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${delay.poll-interval:5000}")
+    private long pollInterval;
+
+    @Value("${delay.retry-delay:1000}")
+    private long retryDelay;
+
+    @Value("${delay.max-retries:5}")
+    private int maxRetries;
+
+    private HashedTimingWheel wheel;
+    private ExecutorService executor;
+
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+    /**
+     * 本节点时间轮中的任务，同一个任务只保留最新的一个
+     */
+    private final Map<String, HashedTimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Map<String, Integer> retries = new ConcurrentHashMap<>();
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        wheel = new HashedTimingWheel("delay-wheel", tickMillis, wheelSize);
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "delay-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheel.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        wheel.stop();
+        executor.shutdown();
+    }
+
+    /**
+     * 注册任务处理器，参数为提交任务时的payload
+     */
+    public void register(String type, Consumer<String> handler) {
+        if (type.contains(SEPARATOR)) {
+            throw new IllegalArgumentException("任务类型不能包含" + SEPARATOR + ": " + type);
+        }
+        handlers.put(type, handler);
+    }
+
+    /**
+     * 提交延迟任务，同一类型同一payload在到期前重复提交会合并为一次，到期时间以最后一次为准
+     */
+    public void schedule(String type, String payload, long delay, TimeUnit unit) {
+        String member = type + SEPARATOR + payload;
+        long dueAt = System.currentTimeMillis() + unit.toMillis(delay);
+        try {
+            stringRedisTemplate.opsForZSet().add(ZSET_KEY, member, dueAt);
+        } catch (Exception e) {
+            // Redis不可用时任务只保存在内存中，本节点重启会丢失
+            log.warn("延迟任务持久化失败: {}", member, e);
+        }
+        scheduled.increment();
+        arm(member, dueAt);
+    }
+
+    /**
+     * 扫描ZSET，把即将到期而本节点时间轮中没有的任务装入时间轮（重启恢复、接管宕机节点的任务）
+     */
+    @Scheduled(fixedDelayString = "${delay.poll-interval:5000}", initialDelay = 1000)
+    public void recover() {
+        Set<ZSetOperations.TypedTuple<String>> tasks;
+        try {
+            tasks = stringRedisTemplate.opsForZSet().rangeByScoreWithScores(
+                    ZSET_KEY, 0, System.currentTimeMillis() + pollInterval * 2, 0, 1000);
+        } catch (Exception e) {
+            log.warn("扫描延迟任务失败", e);
+            return;
+        }
+        if (tasks == null) {
+            return;
+        }
+        for (ZSetOperations.TypedTuple<String> task : tasks) {
+            if (task.getValue() != null && task.getScore() != null && !timeouts.containsKey(task.getValue())) {
+                recovered.increment();
+                arm(task.getValue(), task.getScore().longValue());
+            }
+        }
+    }
+
+    private void arm(String member, long dueAt) {
+        long delay = Math.max(0, dueAt - System.currentTimeMillis());
+        timeouts.compute(member, (k, old) -> {
+            if (old != null && old.cancel()) {
+                coalesced.increment();
+            }
+            return wheel.schedule(() -> executor.execute(() -> fire(member)), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void fire(String member) {
+        timeouts.computeIfPresent(member, (k, timeout) -> timeout.isExpired() ? null : timeout);
+        Long claimed;
+        try {
+            claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(ZSET_KEY),
+                    member, String.valueOf(System.currentTimeMillis()));
+        } catch (Exception e) {
+            log.warn("领取延迟任务失败: {}", member, e);
+            retry(member);
+            return;
+        }
+        // 已被其他节点执行，或到期时间被推迟（由新的定时器负责）
+        if (claimed == null || claimed != 1L) {
+            return;
+        }
+        int index = member.indexOf(SEPARATOR);
+        Consumer<String> handler = handlers.get(member.substring(0, index));
+        if (handler == null) {
+            log.error("延迟任务没有处理器，丢弃: {}", member);
+            return;
+        }
+        try {
+            handler.accept(member.substring(index + 1));
+            executed.increment();
+            retries.remove(member);
+        } catch (Exception e) {
+            log.error("延迟任务执行失败: {}", member, e);
+            retry(member);
+        }
+    }
+
+    private void retry(String member) {
+        int count = retries.merge(member, 1, Integer::sum);
+        if (count > maxRetries) {
+            failed.increment();
+            retries.remove(member);
+            log.error("延迟任务重试{}次仍失败，放弃: {}", maxRetries, member);
+            return;
+        }
+        long dueAt = System.currentTimeMillis() + retryDelay * count;
+        try {
+            // 只在任务不存在时写回，避免覆盖期间新提交的任务
+            stringRedisTemplate.opsForZSet().addIfAbsent(ZSET_KEY, member, dueAt);
+        } catch (Exception e) {
+            log.warn("延迟任务持久化失败: {}", member, e);
+        }
+        if (!timeouts.containsKey(member)) {
+            arm(member, dueAt);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", wheel.size());
+        stats.put("scheduled", scheduled.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("executed", executed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("recovered", recovered.sum());
+        stats.put("handlers", handlers.keySet());
+        return stats;
+    }
+}
@@ -0,0 +1,174 @@
+package com.hmdp.delay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 哈希时间轮
+ * 时间轮按tick划分为wheelSize个槽，任务按到期tick放入对应的槽，超过一圈的任务记录剩余圈数；
+ * 单个工作线程每个tick只处理一个槽，添加和取消都是O(1)，适合大量短延迟任务（精度为一个tick）。
+ * 到期任务在工作线程上执行，耗时任务应自行提交到线程池
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Thread worker;
+
+    private volatile boolean running;
+    private long startTime;
+    private long tick;
+
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize必须是2的幂: " + wheelSize);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            startTime = System.nanoTime();
+            worker.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * 添加延迟任务
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 尚未到期（未执行、未取消）的任务数
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void work() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            transferPending();
+            wheel[(int) (tick & mask)].expire(System.nanoTime());
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() != Timeout.INIT) {
+                continue;
+            }
+            long ticks = Math.max(0, timeout.deadline - startTime) / tickNanos;
+            // 已经过期的任务放到当前槽，本轮立即执行
+            long target = Math.max(ticks, tick);
+            timeout.rounds = (target - tick) / wheel.length;
+            wheel[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private class Bucket {
+        private final LinkedList<Timeout> timeouts = new LinkedList<>();
+
+        void add(Timeout timeout) {
+            timeouts.add(timeout);
+        }
+
+        void expire(long now) {
+            Iterator<Timeout> it = timeouts.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.state.get() == Timeout.CANCELLED) {
+                    it.remove();
+                } else if (timeout.rounds <= 0 && timeout.deadline <= now) {
+                    it.remove();
+                    timeout.expire();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                }
+            }
+        }
+    }
+
+    public class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        private long rounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务，已经执行的任务返回false
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(INIT, CANCELLED)) {
+                size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            size.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("时间轮任务执行失败", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.hmdp.exception;
+
+/**
+ * 缓存不可用且降级查库被限流时抛出，提示用户稍后重试
+ */
+public class CacheUnavailableException extends RuntimeException {
+
+    public CacheUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 多行INSERT IGNORE批量写入订单，违反唯一索引(user_id, voucher_id)的重复订单被忽略
+     *
+     * @return 实际插入的行数
+     */
+    int insertBatch(@Param("orders") List<VoucherOrder> orders);
 }
@@ -35,6 +35,10 @@ public class CacheDeleteConsumer {
     private static final String STREAM_KEY = CacheDeleteProducer.STREAM_KEY;
     private static final String GROUP_NAME = "cache-delete-group";
     private static final String CONSUMER_NAME = "consumer-1";
+    /**
+     * 单次读取的最大消息数，发件箱批量发布时一次读取一批
+     */
+    private static final int BATCH_SIZE = 50;
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private volatile boolean running = true;
@@ -81,7 +85,7 @@ public class CacheDeleteConsumer {
                 // 读取消息
                 List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
                         Consumer.from(GROUP_NAME, CONSUMER_NAME),
-                        StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                        StreamReadOptions.empty().count(BATCH_SIZE).block(Duration.ofSeconds(2)),
                         StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed())
                 );
 
@@ -134,8 +138,8 @@ public class CacheDeleteConsumer {
                 log.info("Redis缓存不存在或已删除: {}", message.getCacheKey());
             }
 
-            // 删除本地缓存
-            cacheClient.delete(message.getCacheKey());
+            // 删除本地缓存，并延迟再删除一次（延迟双删）
+            cacheClient.doubleDelete(message.getCacheKey());
             log.info("本地缓存删除成功: {}", message.getCacheKey());
 
             // 确认消息
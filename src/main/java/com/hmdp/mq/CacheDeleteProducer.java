@@ -5,10 +5,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * 缓存删除消息生产者
@@ -21,6 +25,7 @@ public class CacheDeleteProducer {
     private StringRedisTemplate stringRedisTemplate;
 
     public static final String STREAM_KEY = "stream:cache:delete";
+    private static final String PAYLOAD_FIELD = "payload";
 
     /**
      * 发送缓存删除消息
@@ -30,6 +35,23 @@ public class CacheDeleteProducer {
         sendMessage(message);
     }
 
+    /**
+     * 批量发送缓存删除消息（一次pipeline），失败时抛出异常由调用方重试
+     */
+    public void sendDeleteMessages(Collection<String> cacheKeys) {
+        byte[] streamKey = STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+        byte[] field = PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String cacheKey : cacheKeys) {
+                byte[] value = JSONUtil.toJsonStr(new CacheDeleteMessage(cacheKey, 0)).getBytes(StandardCharsets.UTF_8);
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(Collections.singletonMap(field, value))
+                        .withStreamKey(streamKey));
+            }
+            return null;
+        });
+        log.info("批量发送缓存删除消息成功, count={}", cacheKeys.size());
+    }
+
     /**
      * 发送重试消息
      */
@@ -0,0 +1,142 @@
+package com.hmdp.mq;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.mapper.CacheOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 缓存失效事件发件箱（Transactional Outbox）
+ * 更新数据的事务中只写一条发件箱记录，不访问Redis；事务提交后唤醒发布线程，
+ * 把发件箱记录按批（去重后一次pipeline）发送到缓存删除队列，发送成功后删除记录。
+ * 事务回滚时记录一起回滚，不会误删缓存；提交后节点宕机未发送的记录由定时扫描补发
+ */
+@Slf4j
+@Component
+public class CacheInvalidationOutbox {
+
+    @Resource
+    private CacheOutboxMapper cacheOutboxMapper;
+
+    @Resource
+    private CacheDeleteProducer cacheDeleteProducer;
+
+    @Value("${cache.outbox.batch-size:200}")
+    private int batchSize;
+
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cache-outbox-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 已经有待执行的发布任务时不重复提交，多个事务的提交合并为一次发布
+     */
+    private final AtomicBoolean signalled = new AtomicBoolean();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PreDestroy
+    public void destroy() {
+        publisher.shutdown();
+    }
+
+    /**
+     * 记录缓存失效事件，在调用方的事务中写入，事务提交后发布；没有事务时立即发布
+     */
+    public void record(String cacheKey) {
+        cacheOutboxMapper.insert(new CacheOutbox().setCacheKey(cacheKey));
+        recorded.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+
+    /**
+     * 兜底扫描：补发提交后没来得及发布（节点宕机、Redis不可用）的记录
+     */
+    @Scheduled(fixedDelayString = "${cache.outbox.poll-interval:5000}")
+    public void poll() {
+        signal();
+    }
+
+    private void signal() {
+        if (signalled.compareAndSet(false, true)) {
+            publisher.execute(() -> {
+                signalled.set(false);
+                publishPending();
+            });
+        }
+    }
+
+    private void publishPending() {
+        while (true) {
+            List<CacheOutbox> rows;
+            try {
+                rows = cacheOutboxMapper.selectPage(new Page<>(1, batchSize, false),
+                        new QueryWrapper<CacheOutbox>().orderByAsc("id")).getRecords();
+            } catch (Exception e) {
+                log.error("查询缓存失效发件箱失败", e);
+                return;
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            // 同一批次内重复的key只发送一次
+            Set<String> keys = rows.stream().map(CacheOutbox::getCacheKey).collect(Collectors.toCollection(LinkedHashSet::new));
+            try {
+                cacheDeleteProducer.sendDeleteMessages(keys);
+            } catch (Exception e) {
+                // 记录保留在发件箱中，等待下次扫描重发
+                failures.increment();
+                log.error("发布缓存失效事件失败, count={}", keys.size(), e);
+                return;
+            }
+            // 发送成功后再删除记录，删除失败最多导致重复发送（删除缓存是幂等的）
+            cacheOutboxMapper.deleteBatchIds(rows.stream().map(CacheOutbox::getId).collect(Collectors.toList()));
+            published.add(keys.size());
+            batches.increment();
+            if (rows.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recorded", recorded.sum());
+        stats.put("published", published.sum());
+        stats.put("batches", batches.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,278 @@
+package com.hmdp.seckill;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 订单消息pending-list监督
+ * 在独立的单线程调度器上定期用XPENDING检查消费者组 g1 中已投递未确认的消息：
+ * 投递次数超过重试上限的消息转入死信stream（stream.orders.dlq），不再阻塞消费者；
+ * 其余空闲时间超过阈值的消息（所属消费者崩溃或卡住）用XAUTOCLAIM认领后重新处理，认领本身会增加投递次数。
+ * 同时统计消费者组的积压（lag）和pending数量。
+ * 死信中的订单已在Redis中扣过库存、记过一人一单，需要人工核对后补单或回补
+ */
+@Slf4j
+@Component
+public class OrderStreamSupervisor {
+
+    public static final String STREAM_KEY = "stream.orders";
+    public static final String DLQ_KEY = "stream.orders.dlq";
+    public static final String GROUP_NAME = "g1";
+    /**
+     * 认领消息使用的消费者名称
+     */
+    private static final String CONSUMER_NAME = "supervisor";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${seckill.order.supervisor.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 检查间隔（毫秒）
+     */
+    @Value("${seckill.order.supervisor.interval:5000}")
+    private long interval;
+
+    /**
+     * 空闲超过该时间（毫秒）的pending消息才会被认领或转入死信
+     */
+    @Value("${seckill.order.supervisor.min-idle:30000}")
+    private long minIdleMillis;
+
+    /**
+     * 投递次数达到该值后转入死信
+     */
+    @Value("${seckill.order.supervisor.max-deliveries:5}")
+    private int maxDeliveries;
+
+    /**
+     * 每次XAUTOCLAIM最多认领的条数
+     */
+    @Value("${seckill.order.supervisor.claim-count:100}")
+    private int claimCount;
+
+    /**
+     * 每次XPENDING最多检查的条数
+     */
+    @Value("${seckill.order.supervisor.scan-count:1000}")
+    private int scanCount;
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> AUTOCLAIM_SCRIPT;
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> LAG_SCRIPT;
+    private static final DefaultRedisScript<Long> DEAD_LETTER_SCRIPT;
+
+    static {
+        AUTOCLAIM_SCRIPT = new DefaultRedisScript<>();
+        AUTOCLAIM_SCRIPT.setLocation(new ClassPathResource("stream_autoclaim.lua"));
+        AUTOCLAIM_SCRIPT.setResultType(List.class);
+        LAG_SCRIPT = new DefaultRedisScript<>();
+        LAG_SCRIPT.setLocation(new ClassPathResource("stream_lag.lua"));
+        LAG_SCRIPT.setResultType(List.class);
+        DEAD_LETTER_SCRIPT = new DefaultRedisScript<>();
+        DEAD_LETTER_SCRIPT.setLocation(new ClassPathResource("stream_dead_letter.lua"));
+        DEAD_LETTER_SCRIPT.setResultType(Long.class);
+    }
+
+    private volatile Consumer<List<MapRecord<String, Object, Object>>> handler;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-stream-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile Map<String, Object> lastSnapshot = Collections.emptyMap();
+    private final AtomicLong lastRunMillis = new AtomicLong();
+
+    /**
+     * 注册认领到的消息的处理器，处理成功后由处理器负责XACK，失败时消息留在pending-list等待下次认领
+     */
+    public void register(Consumer<List<MapRecord<String, Object, Object>>> handler) {
+        this.handler = handler;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 认领的订单要走完整的数据库事务，不能放在Spring默认的单线程调度器上，否则数据库变慢会拖住其他定时任务
+        executor.scheduleWithFixedDelay(this::supervise, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void supervise() {
+        if (!enabled || !Boolean.TRUE.equals(stringRedisTemplate.hasKey(STREAM_KEY))) {
+            return;
+        }
+        runs.increment();
+        lastRunMillis.set(System.currentTimeMillis());
+        try {
+            // 1.XPENDING检查投递次数，超过上限的转入死信
+            deadLetter(stringRedisTemplate.opsForStream().pending(STREAM_KEY, GROUP_NAME, Range.unbounded(), scanCount));
+            // 2.XAUTOCLAIM认领空闲过久的消息并重新处理
+            if (handler != null) {
+                claim();
+            }
+            // 3.记录积压情况
+            lastSnapshot = snapshot();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("订单消息pending-list检查失败", e);
+        }
+    }
+
+    private void deadLetter(PendingMessages pending) {
+        List<String> args = new ArrayList<>();
+        args.add(GROUP_NAME);
+        args.add("max-deliveries");
+        for (PendingMessage message : pending) {
+            if (message.getTotalDeliveryCount() >= maxDeliveries
+                    && message.getElapsedTimeSinceLastDelivery().toMillis() >= minIdleMillis) {
+                args.add(message.getIdAsString());
+                args.add(String.valueOf(message.getTotalDeliveryCount()));
+                log.error("订单消息超过重试次数，转入死信: id={}, consumer={}, deliveries={}",
+                        message.getIdAsString(), message.getConsumerName(), message.getTotalDeliveryCount());
+            }
+        }
+        if (args.size() > 2) {
+            Long moved = stringRedisTemplate.execute(DEAD_LETTER_SCRIPT, Arrays.asList(STREAM_KEY, DLQ_KEY), args.toArray());
+            deadLettered.add(moved == null ? 0 : moved);
+        }
+    }
+
+    /**
+     * 直接把消息转入死信并确认（如格式错误、无法处理的消息）
+     * @param reason 写入死信消息的reason字段
+     */
+    public void deadLetter(List<RecordId> ids, String reason) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(ids.size() * 2 + 2);
+        args.add(GROUP_NAME);
+        args.add(reason);
+        for (RecordId id : ids) {
+            args.add(id.getValue());
+            args.add("");
+        }
+        Long moved = stringRedisTemplate.execute(DEAD_LETTER_SCRIPT, Arrays.asList(STREAM_KEY, DLQ_KEY), args.toArray());
+        deadLettered.add(moved == null ? 0 : moved);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void claim() {
+        String cursor = "0-0";
+        // 一轮最多认领claimCount条，剩下的留到下一个周期
+        List<Object> result = stringRedisTemplate.execute(AUTOCLAIM_SCRIPT, Collections.singletonList(STREAM_KEY),
+                GROUP_NAME, CONSUMER_NAME, String.valueOf(minIdleMillis), cursor, String.valueOf(claimCount));
+        if (result == null || result.size() < 2) {
+            return;
+        }
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        List<RecordId> deleted = new ArrayList<>();
+        for (Object entry : (List<Object>) result.get(1)) {
+            List<Object> item = (List<Object>) entry;
+            RecordId id = RecordId.of(String.valueOf(item.get(0)));
+            Object fields = item.size() > 1 ? item.get(1) : null;
+            if (!(fields instanceof List)) {
+                // Redis 6.2中已被删除的消息返回空字段，直接确认
+                deleted.add(id);
+                continue;
+            }
+            records.add(StreamRecords.<String, Object, Object>mapBacked(toMap((List<Object>) fields))
+                    .withStreamKey(STREAM_KEY).withId(id));
+        }
+        if (!deleted.isEmpty()) {
+            stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, deleted.toArray(new RecordId[0]));
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        claimed.add(records.size());
+        log.warn("认领空闲订单消息: {}条", records.size());
+        handler.accept(records);
+    }
+
+    private static Map<Object, Object> toMap(List<Object> fields) {
+        Map<Object, Object> map = new LinkedHashMap<>(fields.size());
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            map.put(fields.get(i), fields.get(i + 1));
+        }
+        return map;
+    }
+
+    /**
+     * 当前积压：lag（尚未投递的消息数）、pending数量、各消费者pending数、最久未确认的空闲时间、死信数量
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        List<Object> lag = stringRedisTemplate.execute(LAG_SCRIPT, Collections.singletonList(STREAM_KEY),
+                GROUP_NAME, String.valueOf(scanCount));
+        if (lag != null && lag.size() == 3) {
+            snapshot.put("pending", Long.parseLong(String.valueOf(lag.get(0))));
+            snapshot.put("lag", Long.parseLong(String.valueOf(lag.get(1))));
+            snapshot.put("lastDeliveredId", String.valueOf(lag.get(2)));
+        }
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(STREAM_KEY, GROUP_NAME, Range.unbounded(), scanCount);
+        Map<String, Long> byConsumer = new HashMap<>();
+        long maxIdle = 0;
+        for (PendingMessage message : pending) {
+            byConsumer.merge(message.getConsumerName(), 1L, Long::sum);
+            maxIdle = Math.max(maxIdle, message.getElapsedTimeSinceLastDelivery().toMillis());
+        }
+        snapshot.put("pendingByConsumer", byConsumer);
+        snapshot.put("maxIdleMillis", maxIdle);
+        snapshot.put("dlqSize", stringRedisTemplate.opsForStream().size(DLQ_KEY));
+        return snapshot;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(lastSnapshot);
+        stats.put("minIdleMillis", minIdleMillis);
+        stats.put("maxDeliveries", maxDeliveries);
+        stats.put("runs", runs.sum());
+        stats.put("lastRunMillis", lastRunMillis.get());
+        stats.put("claimed", claimed.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+}
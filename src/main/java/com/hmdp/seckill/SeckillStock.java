@@ -0,0 +1,301 @@
+package com.hmdp.seckill;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SEGMENTS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀库存的Redis存储和扣减
+ * seckill.stock.segments大于1时，一张券的库存拆成K个分段 seckill:stock:{id:0} ~ seckill:stock:{id:K-1}，
+ * 每个分段的key带独立的hash tag，集群下可以分布在不同节点。扣减时在Java中按用户id选出起始分段，
+ * 脚本只访问该分段的key；起始分段卖完后依次到下一个分段扣减。
+ * 一人一单只记录在用户起始分段的订单集合 seckill:order:{id:home} 中：起始分段卖完时先在其中预占用户，
+ * 再到其他分段扣减，所有分段都卖完时撤销预占。同一用户无论在哪个分段扣到库存、之后是否补货，
+ * 重复请求都会在起始分段的订单集合中被拦截。
+ * 分段模式下订单消息在扣减成功后单独XADD（stream不可能与所有分段同slot），发送失败时归还库存并撤销订单记录；
+ * 两步之间节点宕机会少卖一件，不会超卖。
+ * 每张券的分段数记录在 seckill:segments:{id}，没有该key的券按原来的单key方式处理（seckill.lua），修改配置不影响已有的券
+ */
+@Component
+public class SeckillStock {
+
+    /**
+     * 单key扣减的返回值：0成功 1库存不足 2重复下单
+     */
+    public static final int OK = 0;
+    public static final int SOLD_OUT = 1;
+    public static final int REPEATED = 2;
+    /**
+     * seckill.lua：券按分段存储；seckill_segment.lua：起始分段已预占用户
+     */
+    private static final int SEGMENTED = 3;
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> SEGMENT_SCRIPT;
+
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        SEGMENT_SCRIPT = new DefaultRedisScript<>();
+        SEGMENT_SCRIPT.setLocation(new ClassPathResource("seckill_segment.lua"));
+        SEGMENT_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${seckill.stock.segments:1}")
+    private int segments;
+
+    /**
+     * 所有key的前缀，压测时用来和线上数据隔离
+     */
+    private final String keyPrefix;
+
+    /**
+     * 分段存储的券的分段数（创建后不会变化）
+     */
+    private final Map<Long, Integer> segmentCounts = new ConcurrentHashMap<>();
+
+    public SeckillStock() {
+        this.keyPrefix = "";
+    }
+
+    public SeckillStock(StringRedisTemplate stringRedisTemplate, String keyPrefix) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * 扣减库存并记录订单，成功时订单消息已写入stream
+     *
+     * @return OK / SOLD_OUT / REPEATED
+     */
+    public int seckill(Long voucherId, Long userId, long orderId) {
+        Integer count = segmentCounts.get(voucherId);
+        if (count == null) {
+            int result = (int) eval(SECKILL_SCRIPT,
+                    Arrays.asList(stockKey(voucherId), orderKey(voucherId), segmentsKey(voucherId), streamKey()),
+                    voucherId.toString(), userId.toString(), String.valueOf(orderId));
+            if (result != SEGMENTED) {
+                return result;
+            }
+            count = segmentsOf(voucherId);
+            segmentCounts.put(voucherId, count);
+        }
+        return seckillSegmented(voucherId, userId, orderId, count);
+    }
+
+    private int seckillSegmented(Long voucherId, Long userId, long orderId, int count) {
+        int home = homeSegment(userId, count);
+        String orderKey = segmentOrderKey(voucherId, home);
+        String user = userId.toString();
+        // 1.起始分段：判断一人一单，有库存直接扣减，否则预占用户
+        int result = (int) eval(SEGMENT_SCRIPT, Arrays.asList(segmentKey(voucherId, home), orderKey), user);
+        if (result == SOLD_OUT || result == REPEATED) {
+            return result;
+        }
+        int segment = home;
+        try {
+            // 2.起始分段卖完，依次到其他分段扣减
+            if (result == SEGMENTED) {
+                segment = -1;
+                for (int i = 1; i < count && segment < 0; i++) {
+                    int next = (home + i) % count;
+                    if (eval(SEGMENT_SCRIPT, Collections.singletonList(segmentKey(voucherId, next)), user) == OK) {
+                        segment = next;
+                    }
+                }
+                if (segment < 0) {
+                    undo(null, orderKey, user);
+                    return SOLD_OUT;
+                }
+            }
+            // 3.发送订单消息
+            enqueue(voucherId, userId, orderId);
+            return OK;
+        } catch (RuntimeException e) {
+            // 归还已扣减的库存并撤销订单记录（预占）
+            undo(segment < 0 ? null : segmentKey(voucherId, segment), orderKey, user);
+            throw e;
+        }
+    }
+
+    /**
+     * 写入新券的库存（覆盖已有的值），分段数使用当前配置
+     */
+    public void init(Long voucherId, int stock) {
+        init(voucherId, stock, segments);
+    }
+
+    /**
+     * 写入库存，segments小于等于1时使用单key
+     */
+    public void init(Long voucherId, int stock, int segments) {
+        if (segments <= 1) {
+            stringRedisTemplate.opsForValue().set(stockKey(voucherId), String.valueOf(stock));
+            return;
+        }
+        // 先写分段库存再写分段数，脚本看到分段数时分段库存一定已经存在（分段key在不同slot，逐个写入）
+        int[] split = split(stock, segments);
+        for (int i = 0; i < segments; i++) {
+            stringRedisTemplate.opsForValue().set(segmentKey(voucherId, i), String.valueOf(split[i]));
+        }
+        stringRedisTemplate.opsForValue().set(segmentsKey(voucherId), String.valueOf(segments));
+        segmentCounts.put(voucherId, segments);
+    }
+
+    /**
+     * 只在Redis中没有库存时写入（预热用），已有的库存可能已被扣减，不能覆盖
+     *
+     * @return 是否写入
+     */
+    public boolean initIfAbsent(Long voucherId, int stock) {
+        if (segments <= 1) {
+            return Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(stockKey(voucherId), String.valueOf(stock)));
+        }
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(segmentsKey(voucherId)))
+                || Boolean.TRUE.equals(stringRedisTemplate.hasKey(stockKey(voucherId)))) {
+            return false;
+        }
+        init(voucherId, stock, segments);
+        return true;
+    }
+
+    /**
+     * 补货：分段存储时把数量平均加到各分段。
+     * 订单记录始终在用户的起始分段，补货后重新有库存的分段不会让已下单的用户再次抢到
+     */
+    public void restock(Long voucherId, int amount) {
+        int count = segmentsOf(voucherId);
+        if (count <= 1) {
+            stringRedisTemplate.opsForValue().increment(stockKey(voucherId), amount);
+            return;
+        }
+        int[] split = split(amount, count);
+        for (int i = 0; i < count; i++) {
+            if (split[i] > 0) {
+                stringRedisTemplate.opsForValue().increment(segmentKey(voucherId, i), split[i]);
+            }
+        }
+    }
+
+    /**
+     * 当前库存：总数及各分段的剩余库存
+     */
+    public Map<String, Object> stockOf(Long voucherId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        int count = segmentsOf(voucherId);
+        List<String> keys = new ArrayList<>();
+        if (count <= 1) {
+            keys.add(stockKey(voucherId));
+        } else {
+            for (int i = 0; i < count; i++) {
+                keys.add(segmentKey(voucherId, i));
+            }
+        }
+        List<Long> stocks = new ArrayList<>(keys.size());
+        long total = 0;
+        for (String key : keys) {
+            String value = stringRedisTemplate.opsForValue().get(key);
+            long stock = value == null ? 0 : Long.parseLong(value);
+            stocks.add(stock);
+            total += stock;
+        }
+        result.put("voucherId", voucherId);
+        result.put("segments", Math.max(count, 1));
+        result.put("total", total);
+        result.put("stocks", stocks);
+        return result;
+    }
+
+    long eval(RedisScript<Long> script, List<String> keys, String... args) {
+        Long result = stringRedisTemplate.execute(script, keys, (Object[]) args);
+        return result == null ? SOLD_OUT : result;
+    }
+
+    void enqueue(Long voucherId, Long userId, long orderId) {
+        Map<String, String> message = new HashMap<>(4);
+        message.put("userId", userId.toString());
+        message.put("voucherId", voucherId.toString());
+        message.put("id", String.valueOf(orderId));
+        stringRedisTemplate.opsForStream().add(StreamRecords.string(message).withStreamKey(streamKey()));
+    }
+
+    /**
+     * 归还库存（stockKey为null时不归还）并从订单集合移除用户，两个key在不同slot，分别执行
+     */
+    void undo(String stockKey, String orderKey, String userId) {
+        if (stockKey != null) {
+            stringRedisTemplate.opsForValue().increment(stockKey);
+        }
+        stringRedisTemplate.opsForSet().remove(orderKey, userId);
+    }
+
+    int segmentsOf(Long voucherId) {
+        String value = stringRedisTemplate.opsForValue().get(segmentsKey(voucherId));
+        return value == null ? 1 : Integer.parseInt(value);
+    }
+
+    /**
+     * 用户的起始分段
+     */
+    static int homeSegment(Long userId, int count) {
+        return (int) Math.floorMod(userId, (long) count);
+    }
+
+    String segmentKey(Long voucherId, int segment) {
+        return keyPrefix + SECKILL_STOCK_KEY + "{" + voucherId + ":" + segment + "}";
+    }
+
+    String segmentOrderKey(Long voucherId, int segment) {
+        return keyPrefix + SECKILL_ORDER_KEY + "{" + voucherId + ":" + segment + "}";
+    }
+
+    private String stockKey(Long voucherId) {
+        return keyPrefix + SECKILL_STOCK_KEY + voucherId;
+    }
+
+    private String orderKey(Long voucherId) {
+        return keyPrefix + SECKILL_ORDER_KEY + voucherId;
+    }
+
+    private String segmentsKey(Long voucherId) {
+        return keyPrefix + SECKILL_SEGMENTS_KEY + voucherId;
+    }
+
+    private String streamKey() {
+        return keyPrefix + OrderStreamSupervisor.STREAM_KEY;
+    }
+
+    /**
+     * 把数量平均拆成n份，余数分给前面的分段
+     */
+    static int[] split(int total, int n) {
+        int[] parts = new int[n];
+        for (int i = 0; i < n; i++) {
+            parts[i] = total / n + (i < total % n ? 1 : 0);
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,149 @@
+package com.hmdp.seckill;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀券售罄标记（每个节点一份）
+ * seckill.lua返回库存不足时在本地标记售罄，并通过Redis发布订阅通知其他节点，
+ * 之后该券的秒杀请求直接在进程内拒绝，不再生成订单id、不再执行Lua脚本。
+ * 补货时调用reset清除所有节点的标记；标记带有效期，广播丢失时最多在有效期后自动恢复
+ */
+@Slf4j
+@Component
+public class SoldOutRegistry {
+
+    private static final String TOPIC = "seckill:sold-out";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${seckill.sold-out.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 售罄标记有效期（毫秒），过期后放行请求重新由Lua脚本判断
+     */
+    @Value("${seckill.sold-out.ttl:60000}")
+    private long ttlMillis;
+
+    /**
+     * 节点标识，用于忽略自己发出的消息
+     */
+    private final String nodeId = IdUtil.simpleUUID();
+
+    /**
+     * 售罄的券id -> 标记过期时间（毫秒）
+     */
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    private RTopic topic;
+
+    @PostConstruct
+    public void init() {
+        topic = redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+        topic.addListener(String.class, (channel, msg) -> onMessage(msg));
+    }
+
+    /**
+     * 是否已售罄，售罄时计入拒绝次数
+     */
+    public boolean isSoldOut(Long voucherId) {
+        if (!enabled) {
+            return false;
+        }
+        Long expireAt = soldOut.get(voucherId);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt < System.currentTimeMillis()) {
+            soldOut.remove(voucherId, expireAt);
+            return false;
+        }
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * 标记售罄并通知其他节点
+     */
+    public void markSoldOut(Long voucherId) {
+        if (!enabled) {
+            return;
+        }
+        if (soldOut.put(voucherId, System.currentTimeMillis() + ttlMillis) == null) {
+            log.info("秒杀券已售罄: voucherId={}", voucherId);
+            publish("set", voucherId);
+        }
+    }
+
+    /**
+     * 清除售罄标记（补货后调用），同时通知其他节点
+     */
+    public void reset(Long voucherId) {
+        soldOut.remove(voucherId);
+        log.info("清除秒杀券售罄标记: voucherId={}", voucherId);
+        publish("reset", voucherId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("enabled", enabled);
+        stats.put("soldOut", soldOut.keySet());
+        stats.put("rejected", rejected.sum());
+        stats.put("published", published.sum());
+        stats.put("received", received.sum());
+        return stats;
+    }
+
+    private void publish(String op, Long voucherId) {
+        JSONObject msg = new JSONObject();
+        msg.set("node", nodeId);
+        msg.set("op", op);
+        msg.set("voucherId", voucherId);
+        try {
+            // 异步发送，不阻塞秒杀请求；丢失时由标记有效期兜底
+            topic.publishAsync(msg.toString());
+            published.increment();
+        } catch (Exception e) {
+            log.error("售罄标记广播发送失败: {}", msg, e);
+        }
+    }
+
+    private void onMessage(String msg) {
+        try {
+            JSONObject json = JSONUtil.parseObj(msg);
+            if (nodeId.equals(json.getStr("node"))) {
+                return;
+            }
+            received.increment();
+            Long voucherId = json.getLong("voucherId");
+            if ("reset".equals(json.getStr("op"))) {
+                soldOut.remove(voucherId);
+            } else if (enabled) {
+                soldOut.put(voucherId, System.currentTimeMillis() + ttlMillis);
+            }
+        } catch (Exception e) {
+            log.error("处理售罄标记广播失败: {}", msg, e);
+        }
+    }
+}
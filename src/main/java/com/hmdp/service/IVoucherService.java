@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -17,4 +19,14 @@ public interface IVoucherService extends IService<Voucher> {
     Result queryVoucherOfShop(Long shopId);
 
     void addSeckillVoucher(Voucher voucher);
+
+    /**
+     * 秒杀券补货：增加数据库和Redis中的库存，并清除各节点的售罄标记
+     */
+    Result restockSeckillVoucher(Long voucherId, Integer amount);
+
+    /**
+     * 秒杀券在Redis中的剩余库存（分段存储时包含各分段的库存）
+     */
+    Map<String, Object> seckillStockOf(Long voucherId);
 }
@@ -11,9 +11,12 @@ import com.hmdp.entity.Blog;
 import com.hmdp.entity.Follow;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mq.CacheInvalidationOutbox;
 import com.hmdp.service.IBlogService;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.cache.breaker.L2UnavailableException;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -24,10 +27,15 @@ import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_TTL;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 /**
@@ -50,6 +58,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Resource
     private IFollowService followService;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
     @Override
     public Result queryHotBlog(Integer current) {
         // 根据用户查询
@@ -58,11 +72,9 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
         // 获取当前页数据
         List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog -> {
-            this.queryBlogUser(blog);
-            this.isBlogLiked(blog);
-        });
+        // 批量查询用户
+        queryBlogUsers(records);
+        records.forEach(this::isBlogLiked);
         return Result.ok(records);
     }
 
@@ -108,6 +120,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             // 3.2.保存用户到Redis的set集合  zadd key value score
             if (isSuccess) {
                 stringRedisTemplate.opsForZSet().add(key, userId.toString(), System.currentTimeMillis());
+                // 3.3.点赞数变化，删除笔记缓存
+                evictBlogCache(id);
             }
         } else {
             // 4.如果已点赞，取消点赞
@@ -116,11 +130,24 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             // 4.2.把用户从Redis的set集合移除
             if (isSuccess) {
                 stringRedisTemplate.opsForZSet().remove(key, userId.toString());
+                // 4.3.点赞数变化，删除笔记缓存
+                evictBlogCache(id);
             }
         }
         return Result.ok();
     }
 
+    /**
+     * 删除笔记缓存；数据库已经更新，Redis不可用时不让请求失败，改为写入发件箱，由发布线程和定时扫描重试删除
+     */
+    private void evictBlogCache(Long id) {
+        try {
+            cacheClient.delete(CACHE_BLOG_KEY + id);
+        } catch (L2UnavailableException e) {
+            cacheInvalidationOutbox.record(CACHE_BLOG_KEY + id);
+        }
+    }
+
     @Override
     public Result queryBlogLikes(Long id) {
         String key = BLOG_LIKED_KEY + id;
@@ -195,16 +222,19 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             }
         }
 
-        // 5.根据id查询blog
-        String idStr = StrUtil.join(",", ids);
-        List<Blog> blogs = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
+        // 5.根据id批量查询blog（本地缓存 -> Redis -> 数据库），结果顺序与ids一致
+        List<Blog> blogs = cacheClient.queryBatch(CACHE_BLOG_KEY, ids, Blog.class,
+                        blogIds -> listByIds(blogIds).stream().collect(Collectors.toMap(Blog::getId, Function.identity())),
+                        CACHE_BLOG_TTL, TimeUnit.MINUTES)
+                .stream()
+                // 缓存中的对象是共享的，复制后再填充用户和点赞信息
+                .map(blog -> BeanUtil.copyProperties(blog, Blog.class))
+                .collect(Collectors.toList());
 
-        for (Blog blog : blogs) {
-            // 5.1.查询blog有关的用户
-            queryBlogUser(blog);
-            // 5.2.查询blog是否被点赞
-            isBlogLiked(blog);
-        }
+        // 5.1.批量查询blog有关的用户
+        queryBlogUsers(blogs);
+        // 5.2.查询blog是否被点赞
+        blogs.forEach(this::isBlogLiked);
 
         // 6.封装并返回
         ScrollResult r = new ScrollResult();
@@ -215,6 +245,25 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         return Result.ok(r);
     }
 
+    /**
+     * 批量填充笔记作者信息（一次IN查询）
+     */
+    private void queryBlogUsers(List<Blog> blogs) {
+        if (blogs.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = blogs.stream().map(Blog::getUserId).collect(Collectors.toSet());
+        Map<Long, User> users = userService.listByIds(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        for (Blog blog : blogs) {
+            User user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
     private void queryBlogUser(Blog blog) {
         Long userId = blog.getUserId();
         User user = userService.getById(userId);
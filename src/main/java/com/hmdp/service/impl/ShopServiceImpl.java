@@ -1,11 +1,13 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.cache.bloom.BloomFilterRegistry;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mq.CacheInvalidationOutbox;
 import com.hmdp.service.IShopService;
 import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.SystemConstants;
@@ -22,6 +24,8 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -66,7 +70,20 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     }
 
     @Resource
-    private com.hmdp.mq.CacheDeleteProducer cacheDeleteProducer;
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1.写入数据库
+        save(shop);
+        // 2.加入布隆过滤器（广播到所有节点）
+        bloomFilterRegistry.put(CACHE_SHOP_KEY, shop.getId());
+        // 3.返回店铺id
+        return Result.ok(shop.getId());
+    }
 
     @Override
     @Transactional
@@ -78,22 +95,9 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         // 1.更新数据库
         updateById(shop);
 
-        // 2.删除缓存（Redis + 本地缓存）
-        String cacheKey = CACHE_SHOP_KEY + id;
-        try {
-            // 2.1 删除Redis缓存
-            Boolean deleted = stringRedisTemplate.delete(cacheKey);
-            if (Boolean.TRUE.equals(deleted)) {
-                log.info("Redis缓存删除成功: {}", cacheKey);
-            }
-            // 2.2 删除本地缓存
-            cacheClient.delete(cacheKey);
-            log.info("本地缓存删除成功: {}", cacheKey);
-        } catch (Exception e) {
-            // 3.删除失败，发送消息到队列进行补偿重试
-            log.error("缓存删除失败，发送补偿消息: {}", cacheKey, e);
-            cacheDeleteProducer.sendDeleteMessage(cacheKey);
-        }
+        // 2.在同一事务中写入缓存失效事件，事务提交后由发件箱发布到缓存删除队列（延迟双删）
+        // 提交前不删除缓存，避免并发读请求在提交前用旧数据回填
+        cacheInvalidationOutbox.record(CACHE_SHOP_KEY + id);
 
         return Result.ok();
     }
@@ -143,13 +147,20 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             Distance distance = result.getDistance();
             distanceMap.put(shopIdStr, distance);
         });
-        // 5.根据id查询Shop
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
-        for (Shop shop : shops) {
+        // 5.根据id批量查询Shop（本地缓存 -> Redis -> 数据库），结果顺序与ids一致
+        List<Shop> shops = cacheClient.queryBatch(CACHE_SHOP_KEY, ids, Shop.class, this::queryShopMap,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        for (int i = 0; i < shops.size(); i++) {
+            // 缓存中的对象是共享的，复制后再设置距离
+            Shop shop = BeanUtil.copyProperties(shops.get(i), Shop.class);
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+            shops.set(i, shop);
         }
         // 6.返回
         return Result.ok(shops);
     }
+
+    private Map<Long, Shop> queryShopMap(Collection<Long> ids) {
+        return listByIds(ids).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
+    }
 }
@@ -1,10 +1,23 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
+import com.hmdp.mq.CacheInvalidationOutbox;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheClient;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
 
 /**
  * <p>
@@ -17,4 +30,48 @@ import org.springframework.stereotype.Service;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
+    /**
+     * 店铺类型整体缓存为一个key：cache:shop-type:list
+     */
+    private static final String LIST_ID = "list";
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+
+    @Override
+    public Result queryTypeList() {
+        // 经CacheClient查询（本地缓存 -> Redis -> 数据库），数组类型由编解码器按JSON编码
+        ShopType[] types = cacheClient.queryWithPassThrough(CACHE_SHOP_TYPE_KEY, LIST_ID, ShopType[].class,
+                id -> query().orderByAsc("sort").list().toArray(new ShopType[0]),
+                CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
+        return Result.ok(types == null ? Collections.emptyList() : Arrays.asList(types));
+    }
+
+    @Override
+    @Transactional
+    public boolean save(ShopType entity) {
+        boolean saved = super.save(entity);
+        cacheInvalidationOutbox.record(CACHE_SHOP_TYPE_KEY + LIST_ID);
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public boolean updateById(ShopType entity) {
+        boolean updated = super.updateById(entity);
+        // 在同一事务中写入缓存失效事件，事务提交后删除类型列表缓存
+        cacheInvalidationOutbox.record(CACHE_SHOP_TYPE_KEY + LIST_ID);
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        cacheInvalidationOutbox.record(CACHE_SHOP_TYPE_KEY + LIST_ID);
+        return removed;
+    }
 }
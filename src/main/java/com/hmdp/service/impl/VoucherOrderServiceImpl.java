@@ -7,29 +7,37 @@ import com.hmdp.annotation.SlideWindowLimit;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
+import com.hmdp.seckill.OrderStreamSupervisor;
+import com.hmdp.seckill.SeckillStock;
+import com.hmdp.seckill.SoldOutRegistry;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.utils.RedisIdWorker;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.hmdp.annotation.LimitDimension.IP;
 import static com.hmdp.annotation.LimitDimension.USER;
@@ -52,7 +60,13 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedisIdWorker redisIdWorker;
     @Resource
-    private RedissonClient redissonClient;
+    private TransactionTemplate transactionTemplate;
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+    @Resource
+    private OrderStreamSupervisor orderStreamSupervisor;
+    @Resource
+    private SeckillStock seckillStock;
     @Resource
     private StringRedisTemplate stringRedisTemplate;
     
@@ -60,16 +74,28 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Qualifier("seckillOrderExecutor")
     private ExecutorService seckillOrderExecutor;
 
-    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    /**
+     * 每批最多处理的订单消息数
+     */
+    @Value("${seckill.order.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 攒批等待时间（毫秒），批次未满时最多再等这么久
+     */
+    @Value("${seckill.order.flush-interval:50}")
+    private long flushInterval;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder createdOrders = new LongAdder();
+    private final LongAdder duplicateOrders = new LongAdder();
+    private final LongAdder stockShortages = new LongAdder();
 
-    static {
-        SECKILL_SCRIPT = new DefaultRedisScript<>();
-        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
-        SECKILL_SCRIPT.setResultType(Long.class);
-    }
 
     @PostConstruct
     private void init() {
+        // 监督线程认领的消息（所属消费者失联或处理失败）也走同样的处理逻辑
+        orderStreamSupervisor.register(this::handleRecords);
         // 启动3个消费者线程
         for (int i = 0; i < 3; i++) {
             seckillOrderExecutor.submit(new VoucherOrderHandler("consumer-" + i));
@@ -87,25 +113,30 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         public void run() {
             while (true) {
                 try {
-                    // 1.获取消息队列中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 >
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", consumerName),  // 使用不同的消费者名称
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            StreamOffset.create("stream.orders", ReadOffset.lastConsumed())
-                    );
+                    // 1.获取消息队列中的订单信息 XREADGROUP GROUP g1 c1 COUNT n BLOCK 2000 STREAMS s1 >
+                    List<MapRecord<String, Object, Object>> list = read(ReadOffset.lastConsumed(), batchSize, Duration.ofSeconds(2));
                     // 2.判断订单信息是否为空
-                    if (list == null || list.isEmpty()) {
-                        // 如果为null，说明没有消息，继续下一次循环
+                    if (list.isEmpty()) {
+                        // 如果为空，说明没有消息，继续下一次循环
                         continue;
                     }
-                    // 解析数据
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> value = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
-                    // 3.创建订单
-                    createVoucherOrder(voucherOrder);
-                    // 4.确认消息 XACK
-                    stringRedisTemplate.opsForStream().acknowledge("stream.orders", "g1", record.getId());
+                    // 3.批次未满时在刷新间隔内继续攒批
+                    List<MapRecord<String, Object, Object>> batch = new ArrayList<>(list);
+                    long deadline = System.currentTimeMillis() + flushInterval;
+                    while (batch.size() < batchSize) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        // block(0)表示永久阻塞，剩余时间不足1ms时直接提交
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        List<MapRecord<String, Object, Object>> more = read(ReadOffset.lastConsumed(), batchSize - batch.size(), Duration.ofMillis(remaining));
+                        if (more.isEmpty()) {
+                            break;
+                        }
+                        batch.addAll(more);
+                    }
+                    // 4.批量创建订单并确认消息
+                    handleBatch(batch);
                 } catch (Exception e) {
                     log.error("处理订单异常", e);
                     handlePendingList();
@@ -113,33 +144,203 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
             }
         }
 
+        /**
+         * 处理本消费者pending-list中的消息（已读取未确认），从头到尾过一遍就结束。
+         * 处理失败的消息留在pending-list，由OrderStreamSupervisor按空闲时间认领重试、超过重试次数转入死信，
+         * 不在这里反复重试，避免一条坏消息卡住消费者
+         */
         private void handlePendingList() {
+            String lastId = "0";
             while (true) {
                 try {
-                    // 1.获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 0
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", consumerName),  // 使用不同的消费者名称
-                            StreamReadOptions.empty().count(1),
-                            StreamOffset.create("stream.orders", ReadOffset.from("0"))
-                    );
+                    // 1.获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT n STREAMS s1 lastId
+                    List<MapRecord<String, Object, Object>> list = read(ReadOffset.from(lastId), batchSize, null);
                     // 2.判断订单信息是否为空
-                    if (list == null || list.isEmpty()) {
-                        // 如果为null，说明没有异常消息，结束循环
+                    if (list.isEmpty()) {
+                        // 如果为空，说明没有异常消息，结束循环
                         break;
                     }
-                    // 解析数据
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> value = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
-                    // 3.创建订单
-                    createVoucherOrder(voucherOrder);
-                    // 4.确认消息 XACK
-                    stringRedisTemplate.opsForStream().acknowledge("stream.orders", "g1", record.getId());
+                    lastId = list.get(list.size() - 1).getId().getValue();
+                    // 3.批量处理，失败时逐条处理
+                    handleRecords(list);
                 } catch (Exception e) {
-                    log.error("处理订单异常", e);
+                    // Redis不可用等情况，交给下一轮主循环和监督线程
+                    log.error("处理pending-list异常", e);
+                    break;
                 }
             }
         }
+
+        private List<MapRecord<String, Object, Object>> read(ReadOffset offset, int count, Duration block) {
+            StreamReadOptions options = StreamReadOptions.empty().count(count);
+            if (block != null) {
+                options = options.block(block);
+            }
+            List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                    Consumer.from("g1", consumerName),  // 使用不同的消费者名称
+                    options,
+                    StreamOffset.create("stream.orders", offset)
+            );
+            return list == null ? Collections.emptyList() : list;
+        }
+    }
+
+    /**
+     * 处理一批订单消息：先整批处理，失败时逐条处理，只让真正失败的消息留在pending-list
+     */
+    private void handleRecords(List<MapRecord<String, Object, Object>> records) {
+        try {
+            handleBatch(records);
+        } catch (Exception e) {
+            if (records.size() == 1) {
+                log.error("处理订单消息失败，等待重试: {}", records.get(0).getId(), e);
+                return;
+            }
+            log.error("批量处理订单消息失败，改为逐条处理: {}条", records.size(), e);
+            for (MapRecord<String, Object, Object> record : records) {
+                try {
+                    handleBatch(Collections.singletonList(record));
+                } catch (Exception ex) {
+                    log.error("处理订单消息失败，等待重试: {}", record.getId(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量落库一批订单消息：批内去重、按代金券合并扣减库存、多行INSERT IGNORE，
+     * 全部在一个事务内完成，成功后一次XACK确认整批消息；失败时事务回滚，消息留在pending-list重试。
+     * 一人一单由seckill.lua和唯一索引(user_id, voucher_id)保证，正常路径不加锁也不查重
+     */
+    private void handleBatch(List<MapRecord<String, Object, Object>> records) {
+        // 1.解析并按(用户, 代金券)去重，同一批内重复投递的消息只保留一条
+        Map<String, VoucherOrder> orders = new LinkedHashMap<>();
+        RecordId[] ids = new RecordId[records.size()];
+        List<RecordId> malformed = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            MapRecord<String, Object, Object> record = records.get(i);
+            ids[i] = record.getId();
+            VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true);
+            if (voucherOrder.getUserId() == null || voucherOrder.getVoucherId() == null || voucherOrder.getId() == null) {
+                log.error("订单消息格式错误，转入死信: {}", record);
+                malformed.add(record.getId());
+                continue;
+            }
+            if (orders.putIfAbsent(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId(), voucherOrder) != null) {
+                duplicateOrders.increment();
+            }
+        }
+        // 2.格式错误的消息转入死信stream（同时确认），保留原始内容便于排查
+        orderStreamSupervisor.deadLetter(malformed, "malformed");
+        // 3.一个事务内扣减库存并写入订单
+        if (!orders.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> createVoucherOrders(orders.values(), false));
+            } catch (DuplicateOrderException e) {
+                // 批内有已存在的订单（消息重复投递等，少见），事务已回滚，先过滤已存在的订单再重做一次；
+                // 再次冲突时异常抛出，整批不确认，留在pending-list重试
+                transactionTemplate.executeWithoutResult(status -> createVoucherOrders(orders.values(), true));
+            }
+        }
+        // 4.确认消息 XACK（多个ID一次确认）
+        stringRedisTemplate.opsForStream().acknowledge("stream.orders", "g1", ids);
+        batches.increment();
+    }
+
+    /**
+     * @param filterExisting 是否先用唯一索引查出已存在的订单并过滤掉；
+     *                       INSERT IGNORE发现重复时都抛出DuplicateOrderException回滚整批，扣减的库存随之回滚
+     */
+    private void createVoucherOrders(Collection<VoucherOrder> orders, boolean filterExisting) {
+        if (filterExisting) {
+            orders = filterExisting(orders);
+        }
+        // 1.按代金券分组，每个代金券一条 UPDATE stock = stock - k
+        Map<Long, List<VoucherOrder>> byVoucher = new LinkedHashMap<>();
+        for (VoucherOrder voucherOrder : orders) {
+            byVoucher.computeIfAbsent(voucherOrder.getVoucherId(), k -> new ArrayList<>()).add(voucherOrder);
+        }
+        List<VoucherOrder> toInsert = new ArrayList<>(orders.size());
+        int shortage = 0;
+        for (Map.Entry<Long, List<VoucherOrder>> entry : byVoucher.entrySet()) {
+            List<VoucherOrder> list = entry.getValue();
+            int granted = deductStock(entry.getKey(), list.size());
+            if (granted < list.size()) {
+                shortage += list.size() - granted;
+                log.error("库存不足！voucherId={}, 需要={}, 扣减={}", entry.getKey(), list.size(), granted);
+            }
+            toInsert.addAll(list.subList(0, granted));
+        }
+        // 2.多行INSERT IGNORE写入订单，已存在的订单被唯一索引忽略
+        int inserted = toInsert.isEmpty() ? 0 : getBaseMapper().insertBatch(toInsert);
+        if (inserted < toInsert.size()) {
+            if (filterExisting) {
+                // 过滤后仍然冲突说明有并发写入同一订单（如监督线程认领了仍在处理中的批次），
+                // 回滚整批避免重复订单多扣库存，消息留在pending-list，等对方提交后重试时会被过滤掉
+                log.warn("批量写入订单时仍有重复订单，回滚等待重试，数量={}", toInsert.size() - inserted);
+            }
+            throw new DuplicateOrderException();
+        }
+        createdOrders.add(inserted);
+        stockShortages.add(shortage);
+    }
+
+    /**
+     * 用唯一索引(user_id, voucher_id)一次IN查询过滤掉已存在的订单
+     */
+    private List<VoucherOrder> filterExisting(Collection<VoucherOrder> orders) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> voucherIds = new HashSet<>();
+        for (VoucherOrder voucherOrder : orders) {
+            userIds.add(voucherOrder.getUserId());
+            voucherIds.add(voucherOrder.getVoucherId());
+        }
+        Set<String> existing = new HashSet<>();
+        for (VoucherOrder voucherOrder : query().select("user_id", "voucher_id")
+                .in("user_id", userIds).in("voucher_id", voucherIds).list()) {
+            existing.add(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId());
+        }
+        List<VoucherOrder> remaining = new ArrayList<>(orders.size());
+        for (VoucherOrder voucherOrder : orders) {
+            if (existing.contains(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId())) {
+                duplicateOrders.increment();
+                log.warn("忽略重复订单，userId={}, voucherId={}", voucherOrder.getUserId(), voucherOrder.getVoucherId());
+            } else {
+                remaining.add(voucherOrder);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 批量写入时发现重复订单，用于回滚事务后改走查重路径
+     */
+    private static class DuplicateOrderException extends RuntimeException {
+        DuplicateOrderException() {
+            super("批量写入订单时发现重复订单", null, false, false);
+        }
+    }
+
+    /**
+     * 扣减库存，返回实际扣减的数量
+     * 正常情况下Redis已经校验过库存，一条UPDATE即可；库存不足以整体扣减时（Redis与数据库不一致）退化为逐个扣减
+     */
+    private int deductStock(Long voucherId, int k) {
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock - " + k) // set stock = stock - k
+                .eq("voucher_id", voucherId).ge("stock", k) // where id = ? and stock >= k
+                .update();
+        if (success) {
+            return k;
+        }
+        int granted = 0;
+        while (granted < k && seckillVoucherService.update()
+                .setSql("stock = stock - 1")
+                .eq("voucher_id", voucherId).gt("stock", 0)
+                .update()) {
+            granted++;
+        }
+        return granted;
     }
 
     /*private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 * 1024);
@@ -160,49 +361,6 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         }
     }*/
 
-    private void createVoucherOrder(VoucherOrder voucherOrder) {
-        Long userId = voucherOrder.getUserId();
-        Long voucherId = voucherOrder.getVoucherId();
-        // 创建锁对象
-        RLock redisLock = redissonClient.getLock("lock:order:" + userId);
-        // 尝试获取锁
-        boolean isLock = redisLock.tryLock();
-        // 判断
-        if (!isLock) {
-            // 获取锁失败，直接返回失败或者重试
-            log.error("不允许重复下单！");
-            return;
-        }
-
-        try {
-            // 5.1.查询订单
-            int count = query().eq("user_id", userId).eq("voucher_id", voucherId).count();
-            // 5.2.判断是否存在
-            if (count > 0) {
-                // 用户已经购买过了
-                log.error("不允许重复下单！");
-                return;
-            }
-
-            // 6.扣减库存
-            boolean success = seckillVoucherService.update()
-                    .setSql("stock = stock - 1") // set stock = stock - 1
-                    .eq("voucher_id", voucherId).gt("stock", 0) // where id = ? and stock > 0
-                    .update();
-            if (!success) {
-                // 扣减失败
-                log.error("库存不足！");
-                return;
-            }
-
-            // 7.创建订单
-            save(voucherOrder);
-        } finally {
-            // 释放锁
-            redisLock.unlock();
-        }
-    }
-
     @Override
     @SlideWindowLimit(
             dimension = IP,
@@ -211,24 +369,40 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
             timeUnit = TimeUnit.MILLISECONDS
     )
     public Result seckillVoucher(Long voucherId) {
+        // 0.本地已标记售罄，直接拒绝，不再访问Redis
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
         Long userId = UserHolder.getUser().getId();
         long orderId = redisIdWorker.nextId("order");
-        // 1.执行lua脚本
-        Long result = stringRedisTemplate.execute(
-                SECKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(), userId.toString(), String.valueOf(orderId)
-        );
-        int r = result.intValue();
+        // 1.执行lua脚本（分段存储的券按用户路由到分段）
+        int r = seckillStock.seckill(voucherId, userId, orderId);
         // 2.判断结果是否为0
-        if (r != 0) {
-            // 2.1.不为0 ，代表没有购买资格
-            return Result.fail(r == 1 ? "库存不足" : "不能重复下单");
+        if (r != SeckillStock.OK) {
+            // 2.1.不为0 ，代表没有购买资格，库存不足时标记售罄
+            if (r == SeckillStock.SOLD_OUT) {
+                soldOutRegistry.markSoldOut(voucherId);
+            }
+            return Result.fail(r == SeckillStock.SOLD_OUT ? "库存不足" : "不能重复下单");
         }
         // 3.返回订单id
         return Result.ok(orderId);
     }
 
+    @Override
+    public Map<String, Object> orderStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("batchSize", batchSize);
+        stats.put("flushInterval", flushInterval);
+        stats.put("batches", batches.sum());
+        stats.put("created", createdOrders.sum());
+        stats.put("duplicates", duplicateOrders.sum());
+        stats.put("stockShortages", stockShortages.sum());
+        stats.put("soldOut", soldOutRegistry.stats());
+        stats.put("stream", orderStreamSupervisor.stats());
+        return stats;
+    }
+
     /*@Override
     public Result seckillVoucher(Long voucherId) {
         Long userId = UserHolder.getUser().getId();
@@ -5,16 +5,16 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.VoucherMapper;
+import com.hmdp.seckill.SeckillStock;
+import com.hmdp.seckill.SoldOutRegistry;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
-
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import java.util.Map;
 
 /**
  * <p>
@@ -30,7 +30,9 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SeckillStock seckillStock;
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
@@ -52,7 +54,33 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-        // 保存秒杀库存到Redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(), voucher.getStock().toString());
+        // 保存秒杀库存到Redis中（按配置单key或分段存储）
+        seckillStock.init(voucher.getId(), voucher.getStock());
+    }
+
+    @Override
+    public Map<String, Object> seckillStockOf(Long voucherId) {
+        return seckillStock.stockOf(voucherId);
+    }
+
+    @Override
+    @Transactional
+    public Result restockSeckillVoucher(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补货数量必须大于0");
+        }
+        // 1.增加数据库库存
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock + " + amount)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!success) {
+            return Result.fail("秒杀券不存在");
+        }
+        // 2.增加Redis库存
+        seckillStock.restock(voucherId, amount);
+        // 3.清除售罄标记
+        soldOutRegistry.reset(voucherId);
+        return Result.ok();
     }
 }
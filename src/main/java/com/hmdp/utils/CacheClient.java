@@ -1,173 +1,564 @@
 package com.hmdp.utils;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.hmdp.cache.CacheVersions;
+import com.hmdp.cache.HotKeyDetector;
+import com.hmdp.cache.LocalCacheInvalidationBus;
+import com.hmdp.cache.RebuildCostTracker;
+import com.hmdp.cache.SingleFlight;
+import com.hmdp.cache.bloom.BloomFilterRegistry;
+import com.hmdp.cache.breaker.L2Guard;
+import com.hmdp.cache.breaker.L2UnavailableException;
+import com.hmdp.cache.codec.CacheCodecs;
+import com.hmdp.cache.metrics.CacheMetrics;
+import com.hmdp.cache.region.CacheRegion;
+import com.hmdp.cache.region.CacheRegionRegistry;
+import com.hmdp.cache.region.LocalExpiry;
+import com.hmdp.cache.region.TtlPolicy;
+import com.hmdp.delay.DelayedTaskScheduler;
+import com.hmdp.exception.CacheUnavailableException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
-
-import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import java.util.function.Supplier;
 
 @Slf4j
 @Component
 public class CacheClient {
     private StringRedisTemplate stringRedisTemplate;
     @Autowired
-    @Qualifier("commonCache")
-    private Cache<String, Object> commonCache;
+    private CacheRegionRegistry cacheRegionRegistry;
     @Autowired
-    @Qualifier("shopCache")
-    private Cache<String, Object> shopCache;
+    @Qualifier("hotKeyCache")
+    private Cache<String, Object> hotKeyCache;
     
     @Autowired
     @Qualifier("cacheRebuildExecutor")
     private ExecutorService cacheRebuildExecutor;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Autowired
+    private LocalCacheInvalidationBus invalidationBus;
+
+    @Autowired
+    @Qualifier("cacheRedisTemplate")
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Autowired
+    private CacheCodecs cacheCodecs;
+
+    @Autowired
+    private RebuildCostTracker rebuildCostTracker;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private L2Guard l2Guard;
+
+    @Autowired
+    private CacheVersions cacheVersions;
+
+    @Autowired
+    private DelayedTaskScheduler delayedTaskScheduler;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private TtlPolicy ttlPolicy;
+
+    @Value("${cache.double-delete.delay:1000}")
+    private long doubleDeleteDelay;
+
+    @Value("${cache.hot-key.replica-ttl:60}")
+    private long hotKeyReplicaTtl;
+
+    /**
+     * 热点key在本地热点缓存中的过期时间（秒），不超过Redis过期时间
+     */
+    @Value("${cache.hot-key.local-ttl:600}")
+    private long hotKeyLocalTtl;
+
+    /**
+     * 空值标记（防穿透）：Redis中存空字节数组
+     */
+    private static final byte[] EMPTY = new byte[0];
+    /**
+     * getFromRedis返回的空值标记，区别于未命中的null
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * 互斥锁重建：未抢到锁时的最大轮询次数和轮询间隔（毫秒）
+     */
+    private static final int MUTEX_MAX_RETRY = 40;
+    private static final long MUTEX_RETRY_INTERVAL = 50L;
+
+    /**
+     * Redis不可用时直接查询数据库得到的数据，视为最新版本
+     */
+    private static final long LATEST_VERSION = Long.MAX_VALUE;
+
+    /**
+     * 延迟双删的延迟任务类型
+     */
+    public static final String DELAYED_DELETE = "cache:delete";
+
+    private static final DefaultRedisScript<Long> CAS_SCRIPT;
+    private static final DefaultRedisScript<Long> INVALIDATE_SCRIPT;
+
+    static {
+        CAS_SCRIPT = new DefaultRedisScript<>();
+        CAS_SCRIPT.setLocation(new ClassPathResource("cache_cas.lua"));
+        CAS_SCRIPT.setResultType(Long.class);
+        INVALIDATE_SCRIPT = new DefaultRedisScript<>();
+        INVALIDATE_SCRIPT.setLocation(new ClassPathResource("cache_invalidate.lua"));
+        INVALIDATE_SCRIPT.setResultType(Long.class);
+    }
     
     public CacheClient(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
+
+    @PostConstruct
+    public void init() {
+        // 其他节点删除缓存时，同步淘汰本节点的本地缓存
+        invalidationBus.subscribe(versions -> versions.forEach(this::deleteLocalCache));
+        // 失效通知可能丢失时（RESP3跟踪连接重连）清空本地缓存
+        invalidationBus.subscribeReset(this::clearLocalCache);
+        delayedTaskScheduler.register(DELAYED_DELETE, this::evict);
+    }
     public void set(String key, Object value, Long timeout, TimeUnit unit){
-        // 更新Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), timeout, unit);
-        // 更新本地缓存
-        updateLocalCache(key, value, timeout, unit);
+        long version;
+        try {
+            version = currentVersion(key);
+        } catch (L2UnavailableException e) {
+            // Redis不可用，只更新本地缓存
+            updateLocalCache(key, value, LATEST_VERSION, timeout, unit);
+            return;
+        }
+        setVersioned(key, value, version, timeout, unit);
     }
     public void setWithExpire(String key, Object value, Long timeout, TimeUnit unit){
+        try {
+            setWithExpireVersioned(key, value, currentVersion(key), timeout, unit);
+        } catch (L2UnavailableException e) {
+            log.debug("跳过缓存写入: {}", key);
+        }
+    }
+
+    /**
+     * 按读取数据库前的版本号写入Redis（分区配置了l2-ttl时以分区为准）和本地缓存，期间缓存被删除则放弃写入
+     */
+    private void setVersioned(String key, Object value, long version, Long timeout, TimeUnit unit) {
+        long ttl = ttlPolicy.l2TtlSeconds(key, timeout, unit);
+        if (writeVersioned(key, version, cacheCodecs.encode(value), ttl)) {
+            updateLocalCache(key, value, version, timeout, unit);
+        }
+    }
+
+    /**
+     * @return 写入的数据（含逻辑过期时间），期间缓存被删除而放弃写入时返回null
+     */
+    private RedisData setWithExpireVersioned(String key, Object value, long version, Long timeout, TimeUnit unit) {
         RedisData redisData = new RedisData();
         redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(timeout)));
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        redisData.setExpireTime(LocalDateTime.now().plusSeconds(ttlPolicy.l2TtlSeconds(key, timeout, unit)));
+        return writeVersioned(key, version, cacheCodecs.encodeWithExpire(value, redisData.getExpireTime()), 0) ? redisData : null;
     }
     public <R,ID> R queryWithPassThrough(String prefix, ID id, Class<R> type, Function<ID,R> dbFallBack,
                                          Long timeout, TimeUnit unit){
+        // 布隆过滤器判断不存在，直接返回，不访问缓存和数据库
+        if (!bloomFilterRegistry.mightContain(prefix, id)) {
+            return null;
+        }
         // 从本地缓存查询
         String key = prefix + id;
+        hotKeyDetector.record(key);
         R localCache = getLocalCache(key, type);
         if(localCache != null) {
             return localCache;
         }
 
-        // 从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        // 从redis查询商铺缓存（热点key读随机副本），Redis不可用时降级
+        byte[] bytes;
+        long version;
+        try {
+            bytes = getFromRedisReplica(key);
+            // 未命中时先记下版本号，再查询数据库
+            version = bytes != null ? cacheCodecs.versionOf(bytes) : currentVersion(key);
+        } catch (L2UnavailableException e) {
+            return degrade(key, id, type, dbFallBack, timeout, unit);
+        }
+        Object cached = decodeOrNull(key, bytes, type);
         // 如果存在，直接返回
-        if (StrUtil.isNotBlank(json)) {
+        if (cached != null && cached != NULL_VALUE) {
             // 更新本地缓存
-            R r = JSONUtil.toBean(json, type);
-            updateLocalCache(key, r, timeout, unit);
+            R r = type.cast(cached);
+            updateLocalCache(key, r, version, timeout, unit);
             return r;
         }
-        if(json != null){
+        if(cached != null){
             // 缓存穿透，空值也存入本地缓存
-            updateLocalCache(key, null, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+            updateLocalCache(key, null, version, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
             return null;
         }
 
-        R r = dbFallBack.apply(id);
+        R r = loadFromDb(key, id, dbFallBack);
         if(r == null){
-            // 防止缓存穿透
-            stringRedisTemplate.opsForValue().set(key,"", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
-            // 空值也存入本地缓存
-            updateLocalCache(key, null, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+            // 防止缓存穿透，空值也存入本地缓存
+            if (setNull(key, version)) {
+                updateLocalCache(key, null, version, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+            }
             return null;
         }
 
-        this.set(key, r, timeout, unit);
+        setVersioned(key, r, version, timeout, unit);
         return r;
     }
+    /**
+     * 批量查询：本地缓存 -> Redis MGET -> 数据库IN查询，回写使用pipeline
+     * 返回结果与ids顺序一致，不存在的id不出现在结果中（并写入空值标记防穿透）
+     * @param dbFallBack 根据未命中的id集合批量查询数据库，返回id到实体的映射
+     */
+    public <R, ID> List<R> queryBatch(String prefix, Collection<ID> ids, Class<R> type,
+                                      Function<Collection<ID>, Map<ID, R>> dbFallBack,
+                                      Long timeout, TimeUnit unit) {
+        List<ID> idList = new ArrayList<>(ids);
+        Object[] found = new Object[idList.size()];
+
+        // 1.布隆过滤器 + 本地缓存
+        List<Integer> redisMiss = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            ID id = idList.get(i);
+            if (!bloomFilterRegistry.mightContain(prefix, id)) {
+                found[i] = NULL_VALUE;
+                continue;
+            }
+            Object local = getLocalRaw(prefix + id);
+            if (local != null) {
+                found[i] = "".equals(local) ? NULL_VALUE : unwrapLocal(local);
+                continue;
+            }
+            redisMiss.add(i);
+        }
+
+        // 2.Redis MGET
+        List<Integer> dbMiss = new ArrayList<>();
+        if (!redisMiss.isEmpty()) {
+            List<String> keys = new ArrayList<>(redisMiss.size());
+            for (Integer i : redisMiss) {
+                keys.add(prefix + idList.get(i));
+            }
+            List<byte[]> values;
+            long begin = System.nanoTime();
+            try {
+                values = l2Guard.call(() -> cacheRedisTemplate.opsForValue().multiGet(keys));
+                int hits = values == null ? 0 : (int) values.stream().filter(Objects::nonNull).count();
+                cacheMetrics.l2Batch(keys.get(0), hits, keys.size() - hits, System.nanoTime() - begin);
+            } catch (L2UnavailableException e) {
+                cacheMetrics.l2Error(keys.get(0));
+                // Redis不可用：先取本地旧数据，其余在限流许可内查库
+                values = null;
+                for (int j = redisMiss.size() - 1; j >= 0; j--) {
+                    Object stale = cacheRegionRegistry.regionOf(keys.get(j)).getStale(keys.get(j));
+                    if (stale != null) {
+                        l2Guard.recordStaleHit();
+                        found[redisMiss.remove(j)] = unwrapLocal(stale);
+                        keys.remove(j);
+                    }
+                }
+                if (!redisMiss.isEmpty() && !l2Guard.tryDbFallback()) {
+                    throw new CacheUnavailableException("系统繁忙，请稍后重试");
+                }
+            }
+            for (int j = 0; j < redisMiss.size(); j++) {
+                int i = redisMiss.get(j);
+                byte[] bytes = values == null ? null : values.get(j);
+                Object cached = decodeOrNull(keys.get(j), bytes, type);
+                if (cached == null) {
+                    dbMiss.add(i);
+                    continue;
+                }
+                found[i] = cached;
+                long version = cacheCodecs.versionOf(bytes);
+                if (cached == NULL_VALUE) {
+                    updateLocalCache(keys.get(j), null, version, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+                } else {
+                    updateLocalCache(keys.get(j), cached, version, timeout, unit);
+                }
+            }
+        }
+
+        // 3.数据库IN查询，pipeline回写Redis
+        if (!dbMiss.isEmpty()) {
+            List<ID> missIds = new ArrayList<>(dbMiss.size());
+            List<String> missKeys = new ArrayList<>(dbMiss.size());
+            for (Integer i : dbMiss) {
+                missIds.add(idList.get(i));
+                missKeys.add(prefix + idList.get(i));
+            }
+            // 查询数据库前记下版本号
+            Map<String, Long> versions = currentVersions(missKeys);
+            long begin = System.nanoTime();
+            Map<ID, R> loaded = dbFallBack.apply(missIds);
+            int loadedCount = loaded == null ? 0 : loaded.size();
+            cacheMetrics.db(missKeys.get(0), loadedCount, missIds.size() - loadedCount, System.nanoTime() - begin);
+            Map<String, Object> writeBack = new HashMap<>(missIds.size());
+            for (Integer i : dbMiss) {
+                ID id = idList.get(i);
+                R r = loaded == null ? null : loaded.get(id);
+                found[i] = r == null ? NULL_VALUE : r;
+                writeBack.put(prefix + id, r);
+            }
+            setBatch(writeBack, versions, timeout, unit);
+        }
+
+        // 4.按原顺序组装结果
+        List<R> result = new ArrayList<>(found.length);
+        for (Object value : found) {
+            if (value != null && value != NULL_VALUE) {
+                result.add(type.cast(value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 使用pipeline批量执行CAS写入Redis，成功的再写入本地缓存，value为null时写入空值标记
+     * @param versions 查询数据库前读取的各key版本号
+     */
+    private void setBatch(Map<String, Object> values, Map<String, Long> versions, Long timeout, TimeUnit unit) {
+        long nullTtl = TimeUnit.MINUTES.toSeconds(RedisConstants.CACHE_NULL_TTL);
+        byte[] script = CAS_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        List<String> keys = new ArrayList<>(values.keySet());
+        Map<String, Long> updates = ttlPolicy.updatesOf(keys);
+        List<Object> results;
+        try {
+            results = l2Guard.call(() -> cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    Object value = values.get(key);
+                    long version = versions.getOrDefault(key, 0L);
+                    byte[] bytes = value == null ? EMPTY : cacheCodecs.encode(value);
+                    long ttl = value == null ? nullTtl
+                            : ttlPolicy.l2TtlSeconds(key, updates.getOrDefault(key, 0L), timeout, unit);
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2,
+                            key.getBytes(StandardCharsets.UTF_8),
+                            CacheVersions.versionKey(key).getBytes(StandardCharsets.UTF_8),
+                            ascii(version), cacheCodecs.stamp(version, bytes), ascii(ttl));
+                }
+                return null;
+            }));
+        } catch (L2UnavailableException e) {
+            // Redis不可用，只写本地缓存
+            results = null;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            if (results != null && !Long.valueOf(1L).equals(results.get(i))) {
+                cacheVersions.recordRejectedWrite();
+                continue;
+            }
+            long version = results == null ? LATEST_VERSION : versions.getOrDefault(key, 0L);
+            Object value = values.get(key);
+            if (value == null) {
+                updateLocalCache(key, null, version, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+            } else {
+                updateLocalCache(key, value, version, timeout, unit);
+            }
+        }
+    }
+
     /**
      * 逻辑过期方案查询（使用本地缓存，允许返回旧数据）
+     * 未过期的数据按XFetch算法提前异步刷新，热点数据通常在过期前就已经重建完成
      */
     public <R, ID> R queryWithLogicalExpire(String prefix, ID id, Class<R> type, Function<ID, R> dbFallBack,
                                             Long timeout, TimeUnit unit) {
+        if (!bloomFilterRegistry.mightContain(prefix, id)) {
+            return null;
+        }
         String key = prefix + id;
-
-        // 先查本地缓存（逻辑过期允许返回旧数据，所以可以用本地缓存）
-        R localCache = getLocalCache(key, type);
-        if (localCache != null) {
-            return localCache;
+        hotKeyDetector.record(key);
+
+        // 先查本地缓存（逻辑过期允许返回旧数据，所以可以用本地缓存），本地缓存中连同逻辑过期时间一起保存
+        Object local = getLocalRaw(key);
+        if (local instanceof RedisData) {
+            RedisData cached = (RedisData) local;
+            // 未过期时同样按XFetch判断是否提前刷新；已逻辑过期则走下面的Redis路径，双重检查后异步重建
+            if (cached.getExpireTime().isAfter(LocalDateTime.now())) {
+                refreshEarlyIfNeeded(prefix, key, id, cached.getExpireTime(), dbFallBack, timeout, unit);
+                return type.cast(cached.getData());
+            }
+        } else if (local != null && !"".equals(local)) {
+            return castLocal(local, type);
         }
 
-        // 从redis查询
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(json)) {
+        // 从redis查询并反序列化，Redis不可用时降级
+        byte[] bytes;
+        try {
+            bytes = getRaw(key);
+        } catch (L2UnavailableException e) {
+            return degrade(key, id, type, dbFallBack, timeout, unit);
+        }
+        RedisData redisData = decodeWithExpireOrNull(key, bytes, type);
+        if (redisData == null) {
             return null;
         }
-
-        // 反序列化
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        long version = cacheCodecs.versionOf(bytes);
+        R r = type.cast(redisData.getData());
 
         // 检查过期时间
         if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
-            // 未过期，更新本地缓存并返回
-            updateLocalCache(key, r, timeout, unit);
+            // 未过期，按重建耗时判断是否需要提前刷新
+            refreshEarlyIfNeeded(prefix, key, id, redisData.getExpireTime(), dbFallBack, timeout, unit);
+            // 更新本地缓存并返回
+            updateLocalCache(key, redisData, version, timeout, unit);
             return r;
         }
 
         // 已过期，尝试获取锁进行异步重建
         String lockKey = RedisConstants.LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
+        boolean isLock = tryLock(key, lockKey);
 
         if (isLock) {
             // 双重检查
-            json = stringRedisTemplate.opsForValue().get(key);
-            if (!StrUtil.isBlank(json)) {
-                redisData = JSONUtil.toBean(json, RedisData.class);
-                r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+            try {
+                bytes = getRaw(key);
+            } catch (L2UnavailableException e) {
+                unlock(lockKey);
+                updateLocalCache(key, redisData, version, timeout, unit);
+                return r;
+            }
+            RedisData latest = decodeWithExpireOrNull(key, bytes, type);
+            if (latest != null) {
+                redisData = latest;
+                r = type.cast(redisData.getData());
+                version = cacheCodecs.versionOf(bytes);
                 if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
-                    updateLocalCache(key, r, timeout, unit);
+                    updateLocalCache(key, redisData, version, timeout, unit);
                     unlock(lockKey);
                     return r;
                 }
             }
 
             // 异步重建缓存
-            cacheRebuildExecutor.submit(() -> {
-                try {
-                    R r1 = dbFallBack.apply(id);
-                    this.setWithExpire(key, r1, timeout, unit);
-                    // 更新本地缓存
-                    updateLocalCache(key, r1, timeout, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    unlock(lockKey);
-                }
-            });
+            rebuildAsync(prefix, key, lockKey, id, dbFallBack, timeout, unit);
         }
 
         // 返回过期数据（逻辑过期的核心：先返回旧数据）
-        updateLocalCache(key, r, timeout, unit);
+        updateLocalCache(key, redisData, version, timeout, unit);
         return r;
     }
+
+    /**
+     * 未过期的逻辑过期数据按XFetch算法（重建耗时）判断是否提前异步刷新
+     */
+    private <R, ID> void refreshEarlyIfNeeded(String prefix, String key, ID id, LocalDateTime expireTime,
+                                              Function<ID, R> dbFallBack, Long timeout, TimeUnit unit) {
+        long expireAt = expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (rebuildCostTracker.shouldRefreshEarly(prefix, expireAt)) {
+            String lockKey = RedisConstants.LOCK_SHOP_KEY + id;
+            if (tryLock(key, lockKey)) {
+                rebuildAsync(prefix, key, lockKey, id, dbFallBack, timeout, unit);
+            }
+        }
+    }
+    /**
+     * 异步重建逻辑过期缓存并记录重建耗时（调用方需已持有互斥锁，重建完成后释放）
+     */
+    private <R, ID> void rebuildAsync(String prefix, String key, String lockKey, ID id, Function<ID, R> dbFallBack,
+                                      Long timeout, TimeUnit unit) {
+        cacheRebuildExecutor.submit(() -> {
+            long begin = System.nanoTime();
+            try {
+                // 查询数据库前记下版本号，期间缓存被删除则放弃写入
+                long version = currentVersion(key);
+                R r1 = loadFromDb(key, id, dbFallBack);
+                RedisData written = setWithExpireVersioned(key, r1, version, timeout, unit);
+                if (written != null) {
+                    // 更新本地缓存（连同逻辑过期时间）
+                    updateLocalCache(key, r1 == null ? null : written, version, timeout, unit);
+                }
+                long cost = System.nanoTime() - begin;
+                rebuildCostTracker.record(prefix, TimeUnit.NANOSECONDS.toMillis(cost));
+                cacheMetrics.rebuild(key, cost);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                unlock(lockKey);
+            }
+        });
+    }
+
+    // 获取互斥锁（Redis不可用时视为未获取到）
     public boolean tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", RedisConstants.LOCK_SHOP_TTL, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+        try {
+            Boolean flag = l2Guard.call(() -> stringRedisTemplate.opsForValue()
+                    .setIfAbsent(key, "1", RedisConstants.LOCK_SHOP_TTL, TimeUnit.SECONDS));
+            return BooleanUtil.isTrue(flag);
+        } catch (L2UnavailableException e) {
+            return false;
+        }
     }
-    // 释放互斥锁
+    /**
+     * 获取重建key的互斥锁，并记录锁竞争情况
+     */
+    private boolean tryLock(String key, String lockKey) {
+        boolean acquired = tryLock(lockKey);
+        cacheMetrics.lock(key, acquired);
+        return acquired;
+    }
+
+    // 释放互斥锁（释放失败等待锁自动过期）
     public void unlock(String key){
-        stringRedisTemplate.delete(key);
+        l2Guard.callQuietly(() -> stringRedisTemplate.delete(key));
     }
 
     /**
      * 根据key获取本地缓存（仅用于非逻辑过期场景）
      */
     private <R> R getLocalCache(String key, Class<R> type) {
-        // 根据业务选择合适的缓存
-        Cache<String, Object> cache = key.startsWith(CACHE_SHOP_KEY) ? shopCache : commonCache;
-        Object value = cache.getIfPresent(key);
+        return castLocal(getLocalRaw(key), type);
+    }
 
+    /**
+     * 本地缓存原始值转换为目标类型，""（空值标记）返回null
+     */
+    private <R> R castLocal(Object value, Class<R> type) {
+        value = unwrapLocal(value);
         if (value == null) {
             return null;
         }
@@ -183,102 +574,407 @@ public class CacheClient {
     }
 
     /**
-     * 更新本地缓存
+     * 逻辑过期方案在本地缓存中保存的是RedisData（数据 + 逻辑过期时间），取出其中的数据
+     */
+    private static Object unwrapLocal(Object value) {
+        return value instanceof RedisData ? ((RedisData) value).getData() : value;
+    }
+
+    /**
+     * 更新本地缓存，版本号低于该key最近一次删除后的版本时放弃写入
      */
-    private void updateLocalCache(String key, Object value, Long timeout, TimeUnit unit) {
-        if(value == null) {
+    private void updateLocalCache(String key, Object value, long version, Long timeout, TimeUnit unit) {
+        if (!cacheVersions.acceptLocal(key, version)) {
+            return;
+        }
+        CacheRegion region = cacheRegionRegistry.regionOf(key);
+        // 本地缓存过期时间由Redis过期时间按分区比例换算，空值标记存活时间更短
+        boolean nullValue = value == null;
+        long ttlNanos = region.localTtlNanos(nullValue, timeout, unit);
+        if(nullValue) {
             value = "";
         }
 
-        // 根据业务选择合适的缓存
-        Cache<String, Object> cache = key.startsWith(CACHE_SHOP_KEY) ? shopCache : commonCache;
-        // 注意：Caffeine缓存的过期时间由缓存配置统一管理（在CaffeineConfig中配置）
-        // 这里我们依赖Caffeine的自动过期机制，与Redis缓存保持相同的过期时间策略
-        cache.put(key, value);
+        region.put(key, value, ttlNanos);
+        // 热点key额外放入热点缓存，不会被普通key挤出，并且保留更久（hot-key.local-ttl，不超过Redis过期时间）；
+        // 删除时按版本号同步淘汰，更长的过期时间不影响一致性。空值标记仍使用短过期时间
+        if (hotKeyDetector.isHot(key)) {
+            long hotTtlNanos = nullValue ? ttlNanos : Math.max(ttlNanos, Math.min(
+                    TimeUnit.SECONDS.toNanos(hotKeyLocalTtl),
+                    TimeUnit.SECONDS.toNanos(region.l2TtlSeconds(timeout, unit))));
+            LocalExpiry.put(hotKeyCache, key, value, hotTtlNanos);
+        }
     }
 
     /**
-     * 删除本地缓存
+     * 读取本地缓存原始值（先查热点缓存），""表示空值标记
      */
-    private void deleteLocalCache(String key) {
-        if(key.startsWith(CACHE_SHOP_KEY)) {
-            shopCache.invalidate(key);
-        } else {
-            commonCache.invalidate(key);
+    private Object getLocalRaw(String key) {
+        Object value = hotKeyCache.getIfPresent(key);
+        if (value == null) {
+            value = cacheRegionRegistry.regionOf(key).get(key);
         }
+        cacheMetrics.l1(key, value != null);
+        return value;
+    }
+
+    /**
+     * 删除本地缓存，并记录删除后的版本号
+     */
+    private void deleteLocalCache(String key, long version) {
+        cacheVersions.raiseFloor(key, version);
+        hotKeyCache.invalidate(key);
+        cacheRegionRegistry.regionOf(key).invalidate(key);
+    }
+
+    private void clearLocalCache() {
+        hotKeyCache.invalidateAll();
+        cacheRegionRegistry.regions().forEach(CacheRegion::invalidateAll);
     }
 
     /**
-     * 删除缓存（同时删除Redis和本地缓存）
+     * 数据更新后删除缓存（同时删除Redis和本地缓存，并广播其他节点删除本地缓存），计入该key的更新次数
      */
     public void delete(String key) {
-        // 删除Redis缓存
-        stringRedisTemplate.delete(key);
-        // 删除本地缓存
-        deleteLocalCache(key);
+        invalidate(key, true);
+    }
+
+    /**
+     * 淘汰缓存但不计为数据更新：延迟双删的第二次删除、一致性巡检的修复
+     */
+    public void evict(String key) {
+        invalidate(key, false);
+    }
+
+    private void invalidate(String key, boolean update) {
+        long version = 0;
+        try {
+            // 删除Redis缓存并递增版本号（数据更新时同时递增共享的更新计数），失败时抛出异常由调用方重试
+            Long newVersion = l2Guard.call(() -> cacheRedisTemplate.execute(INVALIDATE_SCRIPT,
+                    Arrays.asList(key, CacheVersions.versionKey(key), CacheVersions.updateKey(key)),
+                    ascii(cacheVersions.versionKeyTtl()), ascii(update ? ttlPolicy.updateWindowSeconds() : 0)));
+            version = newVersion == null ? 0 : newVersion;
+            // 删除热点副本
+            List<String> replicaKeys = hotKeyDetector.replicaKeysOf(key);
+            if (!replicaKeys.isEmpty()) {
+                l2Guard.call(() -> stringRedisTemplate.delete(replicaKeys));
+            }
+        } finally {
+            // 无论Redis是否删除成功，都删除本地缓存并广播其他节点
+            deleteLocalCache(key, version);
+            invalidationBus.publish(key, version);
+        }
+    }
+
+    /**
+     * 延迟双删：立即删除一次，延迟cache.double-delete.delay毫秒后再删除一次，
+     * 淘汰更新期间并发读请求用旧数据回填的缓存。短时间内多次更新同一个key时第二次删除会合并
+     */
+    public void doubleDelete(String key) {
+        try {
+            delete(key);
+        } finally {
+            delayedTaskScheduler.schedule(DELAYED_DELETE, key, doubleDeleteDelay, TimeUnit.MILLISECONDS);
+        }
     }
     /**
      * 互斥锁方案查询（不使用本地缓存，保证一致性）
+     * 同一节点内的并发未命中通过SingleFlight合并，只有leader线程去竞争Redis互斥锁并查询数据库
      */
     public <R, ID> R queryWithMutex(String prefix, ID id, Class<R> type, Function<ID, R> dbFallBack,
                                     Long timeout, TimeUnit unit) {
+        if (!bloomFilterRegistry.mightContain(prefix, id)) {
+            return null;
+        }
         String key = prefix + id;
+        hotKeyDetector.record(key);
 
-        // 直接从redis查询（不使用本地缓存，保证一致性）
-        String json = stringRedisTemplate.opsForValue().get(key);
+        try {
+            // 直接从redis查询（不使用本地缓存，保证一致性；热点key读随机副本）
+            Object cached = decodeOrNull(key, getFromRedisReplica(key), type);
 
-        // 如果存在，直接返回
-        if (StrUtil.isNotBlank(json)) {
-            return JSONUtil.toBean(json, type);
-        }
+            // 如果存在，直接返回；空值标记（防穿透）返回null
+            if (cached != null) {
+                return cached == NULL_VALUE ? null : type.cast(cached);
+            }
 
-        // 空值标记（防穿透）
-        if (json != null) {
-            return null;
+            // 缓存重建：同一key在本节点只会有一个加载任务
+            return singleFlight.execute(key, () -> rebuildWithMutex(key, id, type, dbFallBack, timeout, unit));
+        } catch (L2UnavailableException e) {
+            return degrade(key, id, type, dbFallBack, timeout, unit);
         }
+    }
 
-        // 缓存重建
-        R r = null;
+    /**
+     * 持有Redis互斥锁重建缓存，未抢到锁时有限次轮询Redis等待其他节点重建完成
+     */
+    private <R, ID> R rebuildWithMutex(String key, ID id, Class<R> type, Function<ID, R> dbFallBack,
+                                       Long timeout, TimeUnit unit) {
         String lockKey = RedisConstants.LOCK_SHOP_KEY + id;
-
-        try {
-            boolean isLock = tryLock(lockKey);
-            // 未获取到互斥锁，休眠并重试
-            if (!isLock) {
-                Thread.sleep(50);
-                return queryWithMutex(prefix, id, type, dbFallBack, timeout, unit);
+        for (int i = 0; i < MUTEX_MAX_RETRY; i++) {
+            // 检查Redis（可能其他节点已经重建完成）
+            Object cached = getFromRedis(key, type);
+            if (cached != null) {
+                return cached == NULL_VALUE ? null : type.cast(cached);
             }
 
-            // 二次检查Redis（获取锁后再查一次，可能其他线程已经重建完成）
-            json = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(json)) {
-                return JSONUtil.toBean(json, type);
-            }
-            if (json != null) {
-                return null;
+            if (tryLock(key, lockKey)) {
+                try {
+                    return loadAndSet(key, id, type, dbFallBack, timeout, unit);
+                } finally {
+                    unlock(lockKey);
+                }
             }
 
-            // 查询数据库
-            r = dbFallBack.apply(id);
-            if (r == null) {
-                // 防止缓存穿透
-                stringRedisTemplate.opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
+            // 未获取到互斥锁，休眠后再检查
+            try {
+                Thread.sleep(MUTEX_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
             }
+        }
+
+        // 等待超时，直接查询数据库兜底（不写缓存，避免与持锁节点冲突）
+        log.warn("等待缓存重建超时，直接查询数据库: {}", key);
+        cacheMetrics.lockTimeout(key);
+        return loadFromDb(key, id, dbFallBack);
+    }
+
+    /**
+     * 二次检查后查询数据库并写入Redis（调用方需持有互斥锁）
+     */
+    private <R, ID> R loadAndSet(String key, ID id, Class<R> type, Function<ID, R> dbFallBack,
+                                 Long timeout, TimeUnit unit) {
+        // 二次检查Redis（获取锁后再查一次，可能其他线程已经重建完成）
+        Object cached = getFromRedis(key, type);
+        if (cached != null) {
+            return cached == NULL_VALUE ? null : type.cast(cached);
+        }
 
+        // 查询数据库前记下版本号，期间缓存被删除则CAS写入会被拒绝
+        long begin = System.nanoTime();
+        long version = currentVersion(key);
+        R r = loadFromDb(key, id, dbFallBack);
+        if (r == null) {
+            // 防止缓存穿透
+            setNull(key, version);
+        } else {
             // 写入Redis
-            stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(r), timeout, unit);
+            long ttl = ttlPolicy.l2TtlSeconds(key, timeout, unit);
+            writeVersioned(key, version, cacheCodecs.encode(r), ttl);
+        }
+        cacheMetrics.rebuild(key, System.nanoTime() - begin);
+        return r;
+    }
 
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            unlock(lockKey);
+    /**
+     * 查询数据库并记录耗时
+     */
+    private <R, ID> R loadFromDb(String key, ID id, Function<ID, R> dbFallBack) {
+        long begin = System.nanoTime();
+        R r = dbFallBack.apply(id);
+        cacheMetrics.db(key, r == null ? 0 : 1, r == null ? 1 : 0, System.nanoTime() - begin);
+        return r;
+    }
+
+    /**
+     * 写入空值标记（防穿透）
+     */
+    private boolean setNull(String key, long version) {
+        return writeVersioned(key, version, EMPTY, TimeUnit.MINUTES.toSeconds(RedisConstants.CACHE_NULL_TTL));
+    }
+
+    /**
+     * 读取缓存当前的版本号（重建缓存前调用）
+     * @throws L2UnavailableException Redis不可用
+     */
+    private long currentVersion(String key) {
+        byte[] bytes = l2Guard.call(() -> cacheRedisTemplate.opsForValue().get(CacheVersions.versionKey(key)));
+        return bytes == null ? 0 : Long.parseLong(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 批量读取版本号，Redis不可用时按版本0处理（CAS写入会由Redis再次校验）
+     */
+    private Map<String, Long> currentVersions(List<String> keys) {
+        Map<String, Long> versions = new HashMap<>(keys.size());
+        List<String> versionKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            versionKeys.add(CacheVersions.versionKey(key));
+        }
+        try {
+            List<byte[]> values = l2Guard.call(() -> cacheRedisTemplate.opsForValue().multiGet(versionKeys));
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] bytes = values == null ? null : values.get(i);
+                versions.put(keys.get(i), bytes == null ? 0 : Long.parseLong(new String(bytes, StandardCharsets.UTF_8)));
+            }
+        } catch (L2UnavailableException e) {
+            keys.forEach(key -> versions.put(key, 0L));
         }
+        return versions;
+    }
 
+    /**
+     * 带版本号的CAS写入，版本号与读取数据库前不一致（期间缓存被删除）时拒绝写入
+     * @param ttlSeconds 过期时间（秒），0表示不过期
+     * @return 是否可以继续写入本地缓存：CAS成功，或Redis不可用（本地缓存仍受版本号约束）时返回true
+     */
+    private boolean writeVersioned(String key, long version, byte[] bytes, long ttlSeconds) {
+        Long result;
+        try {
+            result = l2Guard.call(() -> cacheRedisTemplate.execute(CAS_SCRIPT,
+                    Arrays.asList(key, CacheVersions.versionKey(key)),
+                    ascii(version), cacheCodecs.stamp(version, bytes), ascii(ttlSeconds)));
+        } catch (L2UnavailableException e) {
+            log.debug("跳过缓存写入: {}", key);
+            return true;
+        }
+        if (result == null || result != 1L) {
+            cacheVersions.recordRejectedWrite();
+            log.info("缓存在重建期间被删除，放弃写入旧数据: {}, version={}", key, version);
+            return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Redis不可用时的降级读取：先返回本地缓存中已过期的旧数据（stale-if-error），
+     * 没有旧数据时在限流许可内查询数据库（只写本地缓存），超出限流抛出CacheUnavailableException
+     */
+    private <R, ID> R degrade(String key, ID id, Class<R> type, Function<ID, R> dbFallBack,
+                              Long timeout, TimeUnit unit) {
+        R stale = castLocal(cacheRegionRegistry.regionOf(key).getStale(key), type);
+        if (stale != null) {
+            l2Guard.recordStaleHit();
+            return stale;
+        }
+        if (!l2Guard.tryDbFallback()) {
+            throw new CacheUnavailableException("系统繁忙，请稍后重试");
+        }
+        R r = loadFromDb(key, id, dbFallBack);
+        updateLocalCache(key, r, LATEST_VERSION, timeout, unit);
         return r;
     }
 
+    /**
+     * 从Redis读取并解码
+     * @return 命中返回对象，空值标记返回NULL_VALUE，未命中（或数据无法解码）返回null
+     * @throws L2UnavailableException Redis不可用
+     */
+    private Object getFromRedis(String key, Class<?> type) {
+        return decodeOrNull(key, getRaw(key), type);
+    }
 
+    /**
+     * 读取Redis原始数据（带版本号包装）
+     * @throws L2UnavailableException Redis不可用
+     */
+    private byte[] getRaw(String key) {
+        return timedL2(key, () -> l2Guard.call(() -> cacheRedisTemplate.opsForValue().get(key)));
+    }
 
+    /**
+     * 读取Redis并记录命中情况和耗时
+     */
+    private byte[] timedL2(String key, Supplier<byte[]> read) {
+        long begin = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = read.get();
+        } catch (L2UnavailableException e) {
+            cacheMetrics.l2Error(key);
+            throw e;
+        }
+        cacheMetrics.l2(key, bytes, bytes != null && cacheCodecs.isNullMarker(bytes), System.nanoTime() - begin);
+        return bytes;
+    }
+
+    /**
+     * 热点key随机读取一个Redis副本，把单key的读压力分散到多个key（多个分片）上
+     * 副本不存在时读主key并回填副本，副本TTL较短，删除缓存时会一起删除。
+     * 回填使用读到的数据自带的版本号做CAS：读主key之后缓存被删除（版本号+1）时放弃回填，避免删除后副本又写回旧数据
+     */
+    private byte[] getFromRedisReplica(String key) {
+        String replicaKey = hotKeyDetector.replicaKeyOf(key);
+        if (replicaKey == null) {
+            return getRaw(key);
+        }
+        return timedL2(key, () -> {
+            byte[] bytes = l2Guard.call(() -> cacheRedisTemplate.opsForValue().get(replicaKey));
+            if (bytes == null) {
+                bytes = l2Guard.call(() -> cacheRedisTemplate.opsForValue().get(key));
+                if (bytes != null) {
+                    backfillReplica(key, replicaKey, bytes);
+                }
+            }
+            return bytes;
+        });
+    }
+
+    /**
+     * 用主key的值回填热点副本
+     * 副本key（key#i）与版本key（{key}:ver）不在同一个slot，集群模式下不能在一个脚本里CAS，
+     * 因此先SET NX写入副本，再读取版本号与数据中的版本戳比较，不一致说明期间缓存已被删除，删掉刚写入的副本。
+     * delete先递增版本号再删除副本，任何交错下旧数据的副本要么被delete删除，要么被这里的校验删除
+     */
+    private void backfillReplica(String key, String replicaKey, byte[] value) {
+        long version = cacheCodecs.versionOf(value);
+        try {
+            Boolean written = l2Guard.call(() -> cacheRedisTemplate.opsForValue()
+                    .setIfAbsent(replicaKey, value, hotKeyReplicaTtl, TimeUnit.SECONDS));
+            if (!Boolean.TRUE.equals(written)) {
+                return;
+            }
+        } catch (L2UnavailableException e) {
+            log.debug("热点副本回填失败: {}", replicaKey);
+            return;
+        }
+        try {
+            if (currentVersion(key) == version) {
+                return;
+            }
+        } catch (L2UnavailableException e) {
+            // 无法校验版本号，不保留副本
+            log.debug("热点副本版本校验失败: {}", replicaKey);
+        }
+        l2Guard.callQuietly(() -> cacheRedisTemplate.delete(replicaKey));
+    }
+
+    private Object decodeOrNull(String key, byte[] bytes, Class<?> type) {
+        if (bytes == null) {
+            return null;
+        }
+        byte[] inner = cacheCodecs.unstamp(bytes);
+        if (inner.length == 0) {
+            return NULL_VALUE;
+        }
+        try {
+            return cacheCodecs.decode(inner, type);
+        } catch (Exception e) {
+            // 格式不兼容（如类结构变化），按未命中处理，由调用方重建覆盖
+            log.warn("缓存解码失败，按未命中处理: {}", key, e);
+            return null;
+        }
+    }
 
+    /**
+     * 解码逻辑过期数据
+     * @return 未命中、空值或无法解码时返回null
+     */
+    private RedisData decodeWithExpireOrNull(String key, byte[] bytes, Class<?> type) {
+        if (bytes == null || cacheCodecs.unstamp(bytes).length == 0) {
+            return null;
+        }
+        try {
+            return cacheCodecs.decodeWithExpire(bytes, type);
+        } catch (Exception e) {
+            log.warn("逻辑过期缓存解码失败: {}", key, e);
+            return null;
+        }
+    }
 }
@@ -11,10 +11,18 @@ public class RedisConstants {
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
+    public static final Long CACHE_BLOG_TTL = 30L;
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+
+    public static final Long CACHE_SHOP_TYPE_TTL = 30L;
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shop-type:";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_SEGMENTS_KEY = "seckill:segments:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
@@ -0,0 +1,13 @@
+-- 带版本的缓存写入：只有版本号与读取数据库前一致时才写入，期间缓存被删除（版本号+1）则拒绝写入旧数据
+-- KEYS[1] 缓存key KEYS[2] 版本key
+-- ARGV[1] 读取数据库前的版本号 ARGV[2] 缓存数据 ARGV[3] 过期时间（秒），0表示不过期
+local current = redis.call('get', KEYS[2]) or '0'
+if (current ~= ARGV[1]) then
+    return 0
+end
+if (ARGV[3] == '0') then
+    redis.call('set', KEYS[1], ARGV[2])
+else
+    redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3])
+end
+return 1
@@ -0,0 +1,12 @@
+-- 删除缓存并递增版本号，返回新的版本号
+-- KEYS[1] 缓存key KEYS[2] 版本key KEYS[3] 更新计数key（三者同一个hash tag）
+-- ARGV[1] 版本key过期时间（秒） ARGV[2] 更新计数窗口（秒），0表示不是数据更新（延迟双删的第二次删除、巡检修复），不计数
+redis.call('del', KEYS[1])
+local version = redis.call('incr', KEYS[2])
+redis.call('expire', KEYS[2], ARGV[1])
+if (ARGV[2] ~= '0') then
+    if (redis.call('incr', KEYS[3]) == 1) then
+        redis.call('expire', KEYS[3], ARGV[2])
+    end
+end
+return version
@@ -0,0 +1,3 @@
+-- 从指定游标执行一次SCAN，返回 {下一个游标, {key...}}
+-- ARGV[1] 游标 ARGV[2] 匹配模式 ARGV[3] COUNT
+return redis.call('scan', ARGV[1], 'match', ARGV[2], 'count', ARGV[3])
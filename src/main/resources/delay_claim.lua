@@ -0,0 +1,8 @@
+-- 领取到期的延迟任务：只有到期且未被其他节点领取（或推迟）时才删除并返回1
+-- KEYS[1] 延迟任务zset ARGV[1] 任务 ARGV[2] 当前时间（毫秒）
+local score = redis.call('zscore', KEYS[1], ARGV[1])
+if (score and tonumber(score) <= tonumber(ARGV[2])) then
+    redis.call('zrem', KEYS[1], ARGV[1])
+    return 1
+end
+return 0
@@ -8,13 +8,21 @@ local orderId = ARGV[3]
 
 -- 2.数据key
 -- 2.1.库存key
-local stockKey = 'seckill:stock:' .. voucherId
+local stockKey = KEYS[1]
 -- 2.2.订单key
-local orderKey = 'seckill:order:' .. voucherId
+local orderKey = KEYS[2]
+-- 2.3.分段数key
+local segmentsKey = KEYS[3]
+-- 2.4.订单消息stream
+local streamKey = KEYS[4]
 
 -- 3.脚本业务
+-- 3.0.库存按分段存储的券由调用方路由到分段（seckill_segment.lua），返回3
+if(redis.call('exists', segmentsKey) == 1) then
+    return 3
+end
 -- 3.1.判断库存是否充足 get stockKey
-if(tonumber(redis.call('get', stockKey)) <= 0) then
+if((tonumber(redis.call('get', stockKey)) or 0) <= 0) then
     -- 3.2.库存不足，返回1
     return 1
 end
@@ -28,5 +36,5 @@ redis.call('incrby', stockKey, -1)
 -- 3.5.下单（保存用户）sadd orderKey userId
 redis.call('sadd', orderKey, userId)
 -- 3.6.发送消息到队列中， XADD stream.orders * k1 v1 k2 v2 ...
-redis.call('xadd', 'stream.orders', '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
-return 0
\ No newline at end of file
+redis.call('xadd', streamKey, '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
+return 0
@@ -0,0 +1,24 @@
+-- 分段库存扣减，KEYS只包含一个分段的key（同一个hash tag {voucherId:segment}，集群下在同一个slot）
+-- KEYS[1] 分段库存key
+-- KEYS[2] 用户起始分段的订单集合（只在起始分段传入），一人一单只在这个集合中判断和记录
+-- ARGV[1] 用户id
+-- 返回 0:扣减成功 1:库存不足 2:重复下单 3:起始分段库存不足，已在订单集合中预占该用户，由调用方到其他分段扣减
+local stockKey = KEYS[1]
+local orderKey = KEYS[2]
+local userId = ARGV[1]
+
+if(orderKey ~= nil and redis.call('sismember', orderKey, userId) == 1) then
+    return 2
+end
+if((tonumber(redis.call('get', stockKey)) or 0) > 0) then
+    redis.call('incrby', stockKey, -1)
+    if(orderKey ~= nil) then
+        redis.call('sadd', orderKey, userId)
+    end
+    return 0
+end
+if(orderKey ~= nil) then
+    redis.call('sadd', orderKey, userId)
+    return 3
+end
+return 1
@@ -0,0 +1,3 @@
+-- 认领空闲时间超过阈值的pending消息，返回 {下一个游标, {{id, {field, value...}}...}}
+-- KEYS[1] stream ARGV[1] 消费者组 ARGV[2] 认领到的消费者 ARGV[3] 最小空闲时间(ms) ARGV[4] 游标 ARGV[5] COUNT
+return redis.call('xautoclaim', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'count', ARGV[5])
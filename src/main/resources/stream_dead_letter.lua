@@ -0,0 +1,23 @@
+-- 把消息转入死信stream并确认原消息，返回转入的条数
+-- KEYS[1] stream KEYS[2] 死信stream ARGV[1] 消费者组 ARGV[2] 原因 ARGV[3..] 依次为 消息id, 投递次数（未知时为空串）
+local moved = 0
+for i = 3, #ARGV, 2 do
+    local id = ARGV[i]
+    local entries = redis.call('xrange', KEYS[1], id, id)
+    if #entries > 0 then
+        local fields = entries[1][2]
+        table.insert(fields, 'originalId')
+        table.insert(fields, id)
+        table.insert(fields, 'reason')
+        table.insert(fields, ARGV[2])
+        if ARGV[i + 1] ~= '' then
+            table.insert(fields, 'deliveries')
+            table.insert(fields, ARGV[i + 1])
+        end
+        redis.call('xadd', KEYS[2], '*', unpack(fields))
+        moved = moved + 1
+    end
+    -- 原消息已被删除的也确认掉，不再重试
+    redis.call('xack', KEYS[1], ARGV[1], id)
+end
+return moved
@@ -0,0 +1,21 @@
+-- 消费者组的积压情况，返回 {pending数, lag, last-delivered-id}，消费者组不存在时返回空
+-- KEYS[1] stream ARGV[1] 消费者组 ARGV[2] Redis 7以下计算lag时最多数到的条数
+if redis.call('exists', KEYS[1]) == 0 then
+    return {}
+end
+local groups = redis.call('xinfo', 'groups', KEYS[1])
+for _, group in ipairs(groups) do
+    local info = {}
+    for i = 1, #group, 2 do
+        info[group[i]] = group[i + 1]
+    end
+    if info['name'] == ARGV[1] then
+        local lag = info['lag']
+        -- Redis 7以下没有lag字段（Redis 7无法计算时为nil），按last-delivered-id之后的消息条数估算
+        if not lag then
+            lag = #redis.call('xrange', KEYS[1], '(' .. info['last-delivered-id'], '+', 'count', ARGV[2])
+        end
+        return {info['pending'], lag, info['last-delivered-id']}
+    end
+end
+return {}
@@ -1,9 +1,11 @@
 package com.hmdp;
 
 import com.hmdp.entity.Shop;
+import com.hmdp.seckill.SeckillStock;
 import com.hmdp.service.impl.ShopServiceImpl;
 import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RedisIdWorker;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.geo.Point;
@@ -14,10 +16,12 @@ import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
@@ -40,6 +44,8 @@ class HmDianPingApplicationTests {
 
     private ExecutorService es = Executors.newFixedThreadPool(500);
 
+    private static final String BENCH_PREFIX = "bench:";
+
     @Test
     void testIdWorker() throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(300);
@@ -107,4 +113,49 @@ class HmDianPingApplicationTests {
         Long count = stringRedisTemplate.opsForHyperLogLog().size("hl2");
         System.out.println("count = " + count);
     }
+
+    /**
+     * 秒杀吞吐量对比：单key库存 vs 分段库存，默认不运行（benchmark标签）
+     * 使用bench:前缀的SeckillStock，key和stream都与线上数据隔离，结束后删除所有压测key
+     */
+    @Test
+    @Tag("benchmark")
+    void testSeckillStockThroughput() throws Exception {
+        SeckillStock stock = new SeckillStock(stringRedisTemplate, BENCH_PREFIX);
+        long singleVoucherId = 1;
+        long segmentedVoucherId = 2;
+        stock.init(singleVoucherId, 30000, 1);
+        stock.init(segmentedVoucherId, 30000, 8);
+        try {
+            for (long voucherId : new long[]{singleVoucherId, segmentedVoucherId}) {
+                CountDownLatch latch = new CountDownLatch(300);
+                AtomicInteger success = new AtomicInteger();
+                long begin = System.currentTimeMillis();
+                for (int i = 0; i < 300; i++) {
+                    int thread = i;
+                    es.submit(() -> {
+                        for (int j = 0; j < 100; j++) {
+                            long userId = thread * 100 + j;
+                            if (stock.seckill(voucherId, userId, userId) == SeckillStock.OK) {
+                                success.incrementAndGet();
+                            }
+                        }
+                        latch.countDown();
+                    });
+                }
+                latch.await();
+                long end = System.currentTimeMillis();
+                System.out.println("voucherId = " + voucherId + ", success = " + success.get() + ", time = " + (end - begin));
+            }
+        } finally {
+            cleanBenchKeys();
+        }
+    }
+
+    private void cleanBenchKeys() {
+        Set<String> keys = stringRedisTemplate.keys(BENCH_PREFIX + "*");
+        if (keys != null && !keys.isEmpty()) {
+            stringRedisTemplate.delete(keys);
+        }
+    }
 }
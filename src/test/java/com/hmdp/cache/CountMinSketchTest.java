@@ -0,0 +1,27 @@
+package com.hmdp.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesHotKeyAndDecays() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        for (int i = 0; i < 5000; i++) {
+            sketch.increment("cache:shop:" + (i % 500));
+        }
+        for (int i = 0; i < 2000; i++) {
+            sketch.increment("cache:shop:hot");
+        }
+        int hot = sketch.estimate("cache:shop:hot");
+        // 只会高估，不会低估
+        assertTrue(hot >= 2000 && hot < 2100, "hot = " + hot);
+        assertTrue(sketch.estimate("cache:shop:1") >= 10);
+
+        sketch.decay();
+        assertEquals(hot >>> 1, sketch.estimate("cache:shop:hot"), 50);
+    }
+}
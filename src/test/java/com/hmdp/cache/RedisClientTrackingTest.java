@@ -0,0 +1,16 @@
+package com.hmdp.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RedisClientTrackingTest {
+
+    @Test
+    void versionKeyMapsBackToDataKey() {
+        assertEquals("cache:shop:1", RedisClientTracking.dataKeyOf(CacheVersions.versionKey("cache:shop:1")));
+        assertNull(RedisClientTracking.dataKeyOf("cache:shop:1"));
+        assertNull(RedisClientTracking.dataKeyOf("{seckill:stock:1}"));
+    }
+}
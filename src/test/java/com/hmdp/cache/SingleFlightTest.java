@@ -0,0 +1,82 @@
+package com.hmdp.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService es = Executors.newFixedThreadPool(16);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(es.submit(() -> singleFlight.execute("cache:shop:1", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "shop-1";
+            })));
+        }
+        started.await();
+        // 等待其余线程进入等待状态
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertEquals("shop-1", future.get());
+        }
+        es.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inflightWaiters().size());
+    }
+
+    @Test
+    void waitersFailFastWhenLoaderThrowsError() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        Future<Object> leader = es.submit(() -> singleFlight.execute("cache:shop:1", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new StackOverflowError();
+        }));
+        started.await();
+        Future<Object> waiter = es.submit(() -> singleFlight.execute("cache:shop:1", () -> "unused"));
+        Thread.sleep(200);
+        release.countDown();
+
+        // 等待者应立即拿到leader的异常，而不是等到10秒超时
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof StackOverflowError);
+        assertThrows(ExecutionException.class, leader::get);
+        es.shutdown();
+    }
+}
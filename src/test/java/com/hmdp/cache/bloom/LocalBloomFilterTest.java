@@ -0,0 +1,28 @@
+package com.hmdp.cache.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalBloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndBoundedFalsePositives() {
+        LocalBloomFilter filter = new LocalBloomFilter(10000, 0.01);
+        for (int i = 1; i <= 10000; i++) {
+            filter.put(String.valueOf(i));
+        }
+        for (int i = 1; i <= 10000; i++) {
+            assertTrue(filter.mightContain(String.valueOf(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10001; i <= 110000; i++) {
+            if (filter.mightContain(String.valueOf(i))) {
+                falsePositives++;
+            }
+        }
+        // 期望误判率1%，留出余量
+        assertTrue(falsePositives < 2000, "falsePositives = " + falsePositives);
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.cache.breaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void opensOnFailuresAndClosesAfterHalfOpenProbes() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 5, 50, 80, 200, 50, 2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onError(FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(60);
+        // 半开：只放行2次探测
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void opensOnSlowCallsAndReopensOnFailedProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 5, 50, 80, 200, 50, 2);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(SLOW);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+}
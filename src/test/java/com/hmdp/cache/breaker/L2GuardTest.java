@@ -0,0 +1,42 @@
+package com.hmdp.cache.breaker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class L2GuardTest {
+
+    @Test
+    void errorInHalfOpenProbeReopensBreaker() throws InterruptedException {
+        L2Guard guard = new L2Guard();
+        ReflectionTestUtils.setField(guard, "windowSize", 10);
+        ReflectionTestUtils.setField(guard, "minCalls", 2);
+        ReflectionTestUtils.setField(guard, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(guard, "slowCallRateThreshold", 80);
+        ReflectionTestUtils.setField(guard, "slowCallMillis", 200L);
+        ReflectionTestUtils.setField(guard, "openMillis", 50L);
+        ReflectionTestUtils.setField(guard, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(guard, "dbPermitsPerSecond", 1.0);
+        guard.init();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(L2UnavailableException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("连接失败");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.state());
+
+        Thread.sleep(60);
+        // 半开探测抛出Error：原样抛出，并按失败重新打开熔断，而不是一直占着探测许可
+        assertThrows(StackOverflowError.class, () -> guard.call(() -> {
+            throw new StackOverflowError();
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, guard.state());
+
+        Thread.sleep(60);
+        assertEquals("ok", guard.call(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, guard.state());
+    }
+}
@@ -0,0 +1,146 @@
+package com.hmdp.cache.codec;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.RedisData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheCodecsTest {
+
+    private static Shop shop() {
+        Shop shop = new Shop();
+        shop.setId(1L).setName("103茶餐厅").setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关").setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192).setY(30.316078).setAvgPrice(80L)
+                .setSold(4215).setComments(3035).setScore(37).setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        return shop;
+    }
+
+    private static CacheCodecs codecs(String name) {
+        CacheCodecs codecs = new CacheCodecs();
+        ReflectionTestUtils.setField(codecs, "codecName", name);
+        codecs.init();
+        return codecs;
+    }
+
+    @Test
+    void roundTrip() {
+        for (String name : new String[]{"binary", "json", "legacy"}) {
+            CacheCodecs codecs = codecs(name);
+            Shop shop = shop();
+            assertEquals(shop, codecs.decode(codecs.encode(shop), Shop.class), name);
+
+            LocalDateTime expireTime = LocalDateTime.of(2030, 1, 1, 0, 0, 0);
+            RedisData redisData = codecs.decodeWithExpire(codecs.encodeWithExpire(shop, expireTime), Shop.class);
+            assertEquals(expireTime, redisData.getExpireTime(), name);
+            assertEquals(shop, redisData.getData(), name);
+        }
+    }
+
+    @Test
+    void arraysRoundTrip() {
+        for (String name : new String[]{"binary", "json", "legacy"}) {
+            CacheCodecs codecs = codecs(name);
+            Shop[] shops = {shop(), shop().setId(2L)};
+            assertArrayEquals(shops, codecs.decode(codecs.stamp(5L, codecs.encode(shops)), Shop[].class), name);
+        }
+        // 迁移前Hutool JSON写入的列表
+        byte[] legacy = JSONUtil.toJsonStr(new Shop[]{shop()}).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(new Shop[]{shop()}, codecs("binary").decode(legacy, Shop[].class));
+    }
+
+    @Test
+    void versionStampIsTransparent() {
+        for (String name : new String[]{"binary", "json", "legacy"}) {
+            CacheCodecs codecs = codecs(name);
+            Shop shop = shop();
+            byte[] stamped = codecs.stamp(42L, codecs.encode(shop));
+            assertEquals(42L, codecs.versionOf(stamped), name);
+            assertEquals(shop, codecs.decode(stamped, Shop.class), name);
+
+            LocalDateTime expireTime = LocalDateTime.of(2030, 1, 1, 0, 0, 0);
+            byte[] stampedLogical = codecs.stamp(7L, codecs.encodeWithExpire(shop, expireTime));
+            assertEquals(7L, codecs.versionOf(stampedLogical), name);
+            assertEquals(shop, codecs.decodeWithExpire(stampedLogical, Shop.class).getData(), name);
+        }
+        CacheCodecs codecs = codecs("binary");
+        // 空值标记
+        assertEquals(0, codecs.unstamp(codecs.stamp(3L, new byte[0])).length);
+        // 没有版本号的旧数据
+        assertEquals(0L, codecs.versionOf(codecs.encode(shop())));
+    }
+
+    @Test
+    void readsLegacyHutoolEntries() {
+        CacheCodecs codecs = codecs("binary");
+        Shop shop = shop();
+        byte[] legacy = JSONUtil.toJsonStr(shop).getBytes(StandardCharsets.UTF_8);
+        assertEquals(shop, codecs.decode(legacy, Shop.class));
+
+        RedisData redisData = new RedisData();
+        redisData.setData(shop);
+        redisData.setExpireTime(LocalDateTime.of(2030, 1, 1, 0, 0, 0));
+        byte[] legacyLogical = JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+        RedisData decoded = codecs.decodeWithExpire(legacyLogical, Shop.class);
+        assertEquals(redisData.getExpireTime(), decoded.getExpireTime());
+        assertEquals(shop, decoded.getData());
+    }
+
+    /**
+     * 简单吞吐对比（纳秒/次），与Hutool JSON的读路径做对比
+     * 只输出耗时没有断言，默认不运行（见pom.xml的test.excludedGroups）
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark() {
+        Shop shop = shop();
+        RedisData redisData = new RedisData();
+        redisData.setData(shop);
+        redisData.setExpireTime(LocalDateTime.now().plusMinutes(30));
+        String hutoolShop = JSONUtil.toJsonStr(shop);
+        String hutoolRedisData = JSONUtil.toJsonStr(redisData);
+        int rounds = 20000;
+
+        long t1 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            JSONUtil.toBean(hutoolShop, Shop.class);
+        }
+        long t2 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            RedisData data = JSONUtil.toBean(hutoolRedisData, RedisData.class);
+            JSONUtil.toBean((JSONObject) data.getData(), Shop.class);
+        }
+        long t3 = System.nanoTime();
+        System.out.println("hutool  shop=" + hutoolShop.length() + "B decode=" + (t2 - t1) / rounds
+                + "ns, redisData=" + hutoolRedisData.length() + "B decode=" + (t3 - t2) / rounds + "ns");
+
+        for (String name : new String[]{"json", "binary"}) {
+            CacheCodecs codecs = codecs(name);
+            byte[] shopBytes = codecs.encode(shop);
+            byte[] logicalBytes = codecs.encodeWithExpire(shop, redisData.getExpireTime());
+            long t4 = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                codecs.decode(shopBytes, Shop.class);
+            }
+            long t5 = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                codecs.decodeWithExpire(logicalBytes, Shop.class);
+            }
+            long t6 = System.nanoTime();
+            System.out.println(name + " shop=" + shopBytes.length + "B decode=" + (t5 - t4) / rounds
+                    + "ns, redisData=" + logicalBytes.length + "B decode=" + (t6 - t5) / rounds + "ns");
+        }
+    }
+}
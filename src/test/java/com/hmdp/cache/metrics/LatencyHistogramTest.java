@@ -0,0 +1,36 @@
+package com.hmdp.cache.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsArePowersOfTwoMicros() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(1));
+        assertEquals(1, LatencyHistogram.bucketOf(2));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(10, LatencyHistogram.bucketOf(1024));
+        assertEquals(11, LatencyHistogram.bucketOf(1025));
+        assertEquals(27, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void percentilesUseBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(100, histogram.count());
+        assertEquals(128, histogram.percentileMicros(0.5));
+        assertEquals(128, histogram.percentileMicros(0.99));
+        // 最后一个样本所在桶的上界超过最大值，取最大值
+        assertEquals(50_000, histogram.percentileMicros(1.0));
+    }
+}
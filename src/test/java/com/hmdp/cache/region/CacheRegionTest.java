@@ -0,0 +1,154 @@
+package com.hmdp.cache.region;
+
+import com.hmdp.cache.codec.BinaryCacheCodec;
+import com.hmdp.cache.codec.JsonCacheCodec;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheRegionTest {
+
+    @Test
+    void localTtlFollowsL2TtlAndNullMarkersExpireSooner() throws InterruptedException {
+        CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+        config.setPrefix("cache:shop:");
+        config.setExpireAfterWrite(Duration.ofMinutes(5));
+        config.setL1TtlRatio(0.2);
+        config.setNullTtl(Duration.ofSeconds(10));
+        CacheRegion region = new CacheRegion("shop", config, new EstimatingCacheWeigher(), 0);
+
+        // 30分钟 * 0.2 = 6分钟，超过上限取5分钟
+        assertEquals(TimeUnit.MINUTES.toNanos(5), region.localTtlNanos(false, 30L, TimeUnit.MINUTES));
+        // 逻辑过期20秒 * 0.2 = 4秒
+        assertEquals(TimeUnit.SECONDS.toNanos(4), region.localTtlNanos(false, 20L, TimeUnit.SECONDS));
+        // 空值2分钟 * 0.2 = 24秒，受null-ttl限制取10秒
+        assertEquals(TimeUnit.SECONDS.toNanos(10), region.localTtlNanos(true, 2L, TimeUnit.MINUTES));
+
+        LocalExpiry.put(region.getCache(), "cache:shop:1", "", TimeUnit.MILLISECONDS.toNanos(50));
+        LocalExpiry.put(region.getCache(), "cache:shop:2", "shop", TimeUnit.MINUTES.toNanos(1));
+        Thread.sleep(100);
+        assertNull(region.getCache().getIfPresent("cache:shop:1"));
+        assertEquals("shop", region.getCache().getIfPresent("cache:shop:2"));
+    }
+
+    @Test
+    void weightedRegionStaysWithinByteBudget() {
+        CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+        config.setPrefix("cache:blog:");
+        config.setStaleTtl(Duration.ZERO);
+        CacheRegion region = new CacheRegion("blog", config, new EstimatingCacheWeigher(), 64 * 1024);
+
+        char[] images = new char[2000];
+        Arrays.fill(images, 'a');
+        for (int i = 0; i < 1000; i++) {
+            region.put("cache:blog:" + i, new String(images), TimeUnit.MINUTES.toNanos(1));
+        }
+        region.getCache().cleanUp();
+        long liveBytes = region.getCache().policy().eviction().get().weightedSize().getAsLong();
+        assertTrue(liveBytes <= 64 * 1024, "liveBytes = " + liveBytes);
+        assertTrue(region.getCache().stats().evictionCount() > 0);
+    }
+
+    @Test
+    void staleCopiesCountAgainstByteBudget() {
+        CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+        config.setPrefix("cache:blog:");
+        config.setStaleShare(0.25);
+        CacheRegion region = new CacheRegion("blog", config, new EstimatingCacheWeigher(), 64 * 1024);
+
+        char[] images = new char[2000];
+        Arrays.fill(images, 'a');
+        for (int i = 0; i < 1000; i++) {
+            region.put("cache:blog:" + i, new String(images), TimeUnit.MINUTES.toNanos(1));
+        }
+        region.getCache().cleanUp();
+        region.getStaleCache().cleanUp();
+        long liveBytes = region.getCache().policy().eviction().get().weightedSize().getAsLong();
+        long staleBytes = region.getStaleCache().policy().eviction().get().weightedSize().getAsLong();
+        assertTrue(liveBytes + staleBytes <= 64 * 1024, "liveBytes = " + liveBytes + ", staleBytes = " + staleBytes);
+        assertTrue(staleBytes <= 16 * 1024, "staleBytes = " + staleBytes);
+    }
+
+    @Test
+    void evictedEntriesAreDemotedOffHeapAndPromotedBack() {
+        CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+        config.setPrefix("cache:shop:");
+        config.setMaximumSize(10);
+        config.setOffHeapSize(DataSize.ofMegabytes(1));
+        CacheRegion region = new CacheRegion("shop", config, new EstimatingCacheWeigher(), 0);
+
+        for (long i = 0; i < 100; i++) {
+            region.put("cache:shop:" + i, new Shop().setId(i).setName("shop" + i), TimeUnit.MINUTES.toNanos(1));
+        }
+        region.getCache().cleanUp();
+        assertTrue(region.getCache().estimatedSize() <= 10);
+
+        for (long i = 0; i < 100; i++) {
+            Object value = region.get("cache:shop:" + i);
+            assertEquals("shop" + i, ((Shop) value).getName());
+        }
+        region.invalidate("cache:shop:5");
+        region.getCache().cleanUp();
+        assertNull(region.get("cache:shop:5"));
+    }
+
+    @Test
+    void invalidateRacingWithPromotionLeavesNothingBehind() throws Exception {
+        CacheRegionProperties.Region config = new CacheRegionProperties.Region();
+        config.setPrefix("cache:shop:");
+        config.setOffHeapSize(DataSize.ofMegabytes(1));
+        CacheRegion region = new CacheRegion("shop", config, new EstimatingCacheWeigher(), 0);
+        OffHeapStore offHeap = region.getOffHeap();
+        byte[] bytes = new BinaryCacheCodec(new JsonCacheCodec()).encode(new Shop().setId(1L).setName("shop"));
+
+        for (int i = 0; i < 20; i++) {
+            String key = "cache:shop:" + i;
+            offHeap.put(key, bytes, Shop.class, TimeUnit.MINUTES.toNanos(1));
+            Thread writer = new Thread(() -> region.invalidate(key));
+            Thread reader = new Thread(() -> region.get(key));
+            // 持有堆外存储的锁，让删除和读取都停在访问堆外存储之前，再同时放行
+            synchronized (offHeap) {
+                writer.start();
+                awaitBlocked(writer);
+                reader.start();
+                awaitBlocked(reader);
+            }
+            writer.join();
+            reader.join();
+            // 删除完成后，读请求不能把旧数据提升回堆内
+            assertNull(region.get(key), key);
+        }
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.BLOCKED) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void heapBudgetIsSplitByShare() {
+        CacheRegionProperties.Region shop = new CacheRegionProperties.Region();
+        shop.setWeightShare(3);
+        CacheRegionProperties.Region blog = new CacheRegionProperties.Region();
+        blog.setMaximumWeight(DataSize.ofMegabytes(4));
+        CacheRegionProperties.Region common = new CacheRegionProperties.Region();
+
+        long[] budgets = CacheRegionRegistry.splitBudget(DataSize.ofMegabytes(20), Arrays.asList(shop, blog, common));
+        assertArrayEquals(new long[]{DataSize.ofMegabytes(12).toBytes(), DataSize.ofMegabytes(4).toBytes(),
+                DataSize.ofMegabytes(4).toBytes()}, budgets);
+        // 未配置总预算时只有配置了maximum-weight的分区按字节限制
+        assertArrayEquals(new long[]{0, DataSize.ofMegabytes(4).toBytes(), 0},
+                CacheRegionRegistry.splitBudget(null, Arrays.asList(shop, blog, common)));
+    }
+}
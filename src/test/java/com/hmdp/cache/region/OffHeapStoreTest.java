@@ -0,0 +1,99 @@
+package com.hmdp.cache.region;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapStoreTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void sizeClassesArePowersOfTwo() {
+        assertEquals(0, OffHeapStore.sizeClassOf(1));
+        assertEquals(0, OffHeapStore.sizeClassOf(64));
+        assertEquals(1, OffHeapStore.sizeClassOf(65));
+        assertEquals(14, OffHeapStore.sizeClassOf(OffHeapStore.PAGE_SIZE));
+        assertEquals(-1, OffHeapStore.sizeClassOf(OffHeapStore.PAGE_SIZE + 1));
+    }
+
+    @Test
+    void removeReturnsCopyAndFreesBlock() {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.PAGE_SIZE);
+        byte[] bytes = "shop".getBytes(StandardCharsets.UTF_8);
+        assertTrue(store.put("cache:shop:1", bytes, String.class, TTL));
+
+        OffHeapStore.Entry entry = store.remove("cache:shop:1");
+        assertNotNull(entry);
+        assertArrayEquals(bytes, entry.bytes);
+        assertEquals(String.class, entry.type);
+        assertNull(store.remove("cache:shop:1"));
+        assertEquals(0L, store.stats().get("usedBytes"));
+    }
+
+    @Test
+    void fullStoreEvictsLeastRecentlyUsedOfSameClass() {
+        // 一页1MB切成1024个1KB的块
+        OffHeapStore store = new OffHeapStore(OffHeapStore.PAGE_SIZE);
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < 1024; i++) {
+            assertTrue(store.put("k" + i, bytes, byte[].class, TTL));
+        }
+        assertTrue(store.put("k1024", bytes, byte[].class, TTL));
+        assertNull(store.remove("k0"));
+        assertNotNull(store.remove("k1"));
+        assertNotNull(store.remove("k1024"));
+        assertEquals(1L, store.stats().get("evictionCount"));
+    }
+
+    @Test
+    void rewrittenEntryMovesToTailOfItsClass() {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.PAGE_SIZE);
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < 1024; i++) {
+            assertTrue(store.put("k" + i, bytes, byte[].class, TTL));
+        }
+        // 重新写入k0后，最久未访问的是k1
+        assertTrue(store.put("k0", bytes, byte[].class, TTL));
+        assertTrue(store.put("k1024", bytes, byte[].class, TTL));
+        assertNotNull(store.remove("k0"));
+        assertNull(store.remove("k1"));
+    }
+
+    @Test
+    void newSizeClassReclaimsPageFromOtherClass() {
+        OffHeapStore store = new OffHeapStore(2L * OffHeapStore.PAGE_SIZE);
+        byte[] bytes = new byte[1000];
+        // 两页都切成1KB的块并用完，先写入的k0 ~ k1023在第一页
+        for (int i = 0; i < 2048; i++) {
+            assertTrue(store.put("k" + i, bytes, byte[].class, TTL));
+        }
+        // 64B级别没有页也没有可淘汰的条目，回收最久未写入条目所在的第一页
+        assertTrue(store.put("small", new byte[10], byte[].class, TTL));
+        assertEquals(1L, store.stats().get("reclaimCount"));
+        assertEquals(1024L, store.stats().get("evictionCount"));
+        assertNull(store.remove("k0"));
+        assertNotNull(store.remove("k1024"));
+        assertNotNull(store.remove("small"));
+
+        // 已经空出的页优先回收，不再淘汰条目
+        assertTrue(store.put("big", new byte[5000], byte[].class, TTL));
+        assertEquals(2L, store.stats().get("reclaimCount"));
+        assertEquals(1024L, store.stats().get("evictionCount"));
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() throws InterruptedException {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.PAGE_SIZE);
+        store.put("cache:shop:1", new byte[8], byte[].class, TimeUnit.MILLISECONDS.toNanos(10));
+        Thread.sleep(30);
+        assertNull(store.remove("cache:shop:1"));
+    }
+}
@@ -0,0 +1,26 @@
+package com.hmdp.cache.region;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PrefixTrieTest {
+
+    @Test
+    void matchesLongestPrefix() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("cache:", "cache");
+        trie.put("cache:shop:", "shop");
+        trie.put("cache:shop:type", "shopType");
+
+        assertEquals("shop", trie.match("cache:shop:1"));
+        assertEquals("shopType", trie.match("cache:shop:type:list"));
+        assertEquals("cache", trie.match("cache:blog:1"));
+        assertNull(trie.match("login:token:abc"));
+
+        trie.put("", "default");
+        assertEquals("default", trie.match("login:token:abc"));
+        assertEquals("default", trie.match(""));
+    }
+}
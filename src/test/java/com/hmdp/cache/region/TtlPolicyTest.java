@@ -0,0 +1,49 @@
+package com.hmdp.cache.region;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TtlPolicyTest {
+
+    @Test
+    void factorFollowsReadWriteRatio() {
+        // 样本不足不调整
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(10, 0, 100, 50));
+        // 读多写少延长
+        assertTrue(TtlPolicy.adaptiveFactor(10_000, 0, 100, 50) > 1);
+        // 频繁更新缩短
+        assertTrue(TtlPolicy.adaptiveFactor(100, 20, 100, 50) < 1);
+    }
+
+    @Test
+    void rarelyUpdatedKeysAreNeverShortened() {
+        // 读次数刚过min-reads、从未更新
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(50, 0, 100, 50));
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(99, 0, 100, 50));
+        // 删除后重建（一次更新）
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(150, 1, 100, 50));
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(0, 1, 100, 50));
+        // 缩短只取决于更新次数
+        assertEquals(0.25, TtlPolicy.adaptiveFactor(0, 4, 100, 50));
+        assertEquals(0.25, TtlPolicy.adaptiveFactor(200, 4, 100, 50));
+    }
+
+    @Test
+    void oneUpdateNeverShortens() {
+        // 一次数据更新（延迟双删的第二次删除不计数），无论读次数多少倍数都不小于1
+        for (long reads = 0; reads <= 1000; reads += 10) {
+            assertTrue(TtlPolicy.adaptiveFactor(reads, 1, 100, 50) >= 1, "reads = " + reads);
+        }
+        assertEquals(1.0, TtlPolicy.adaptiveFactor(60, 1, 100, 50));
+    }
+
+    @Test
+    void jitterStaysWithinBand() {
+        assertEquals(1620, TtlPolicy.jitter(1800, 0.1, 0));
+        assertEquals(1800, TtlPolicy.jitter(1800, 0.1, 0.5));
+        long max = TtlPolicy.jitter(1800, 0.1, 0.999_999);
+        assertTrue(max <= 1980 && max > 1970);
+    }
+}
@@ -0,0 +1,49 @@
+package com.hmdp.delay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void firesInDeadlineOrderAcrossRounds() throws Exception {
+        // 8个槽 * 10ms，一圈80ms，150ms的任务需要跨圈
+        HashedTimingWheel wheel = new HashedTimingWheel("test-wheel", 10, 8);
+        wheel.start();
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        wheel.schedule(() -> { fired.add("c"); done.countDown(); }, 150, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add("a"); done.countDown(); }, 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add("b"); done.countDown(); }, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c"), fired);
+        assertEquals(0, wheel.size());
+        wheel.stop();
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws Exception {
+        HashedTimingWheel wheel = new HashedTimingWheel("test-wheel", 10, 8);
+        wheel.start();
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        HashedTimingWheel.Timeout timeout = wheel.schedule(cancelledRan::countDown, 30, TimeUnit.MILLISECONDS);
+        wheel.schedule(other::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(other.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.await(50, TimeUnit.MILLISECONDS));
+        assertFalse(timeout.cancel());
+        wheel.stop();
+    }
+}
@@ -0,0 +1,151 @@
+package com.hmdp.seckill;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeckillStockTest {
+
+    private static final long VOUCHER_ID = 7L;
+
+    @Test
+    void splitsEvenlyWithRemainderFirst() {
+        assertArrayEquals(new int[]{4, 3, 3}, SeckillStock.split(10, 3));
+        assertArrayEquals(new int[]{1, 1, 0, 0}, SeckillStock.split(2, 4));
+        assertArrayEquals(new int[]{0, 0}, SeckillStock.split(0, 2));
+    }
+
+    @Test
+    void routesToHomeSegmentAndRecordsOrderThere() {
+        InMemorySeckillStock stock = new InMemorySeckillStock(1, 1, 1, 1);
+        // 用户6的起始分段是 6 % 4 = 2
+        assertEquals(SeckillStock.OK, stock.seckill(VOUCHER_ID, 6L, 100L));
+        assertEquals(0, stock.stockOf(2));
+        assertEquals(1, stock.stockOf(3));
+        assertTrue(stock.ordersOf(2).contains("6"));
+        assertEquals(1, stock.messages.size());
+        assertEquals(SeckillStock.REPEATED, stock.seckill(VOUCHER_ID, 6L, 101L));
+    }
+
+    @Test
+    void rolledOverUserCannotBuyAgainAfterRestock() {
+        InMemorySeckillStock stock = new InMemorySeckillStock(1, 1, 0, 1);
+        // 起始分段2卖完，顺延到分段3扣减，订单仍记录在分段2
+        assertEquals(SeckillStock.OK, stock.seckill(VOUCHER_ID, 6L, 100L));
+        assertEquals(0, stock.stockOf(3));
+        assertTrue(stock.ordersOf(2).contains("6"));
+
+        // 起始分段补货后再次请求，被起始分段的订单集合拦截，库存不变
+        stock.stocks.put(stock.segmentKey(VOUCHER_ID, 2), 1);
+        assertEquals(SeckillStock.REPEATED, stock.seckill(VOUCHER_ID, 6L, 101L));
+        assertEquals(1, stock.stockOf(2));
+        assertEquals(1, stock.messages.size());
+    }
+
+    @Test
+    void soldOutEverywhereReleasesReservation() {
+        InMemorySeckillStock stock = new InMemorySeckillStock(0, 0, 0, 0);
+        assertEquals(SeckillStock.SOLD_OUT, stock.seckill(VOUCHER_ID, 6L, 100L));
+        assertTrue(stock.ordersOf(2).isEmpty());
+
+        // 补货后可以正常下单
+        stock.stocks.put(stock.segmentKey(VOUCHER_ID, 0), 1);
+        assertEquals(SeckillStock.OK, stock.seckill(VOUCHER_ID, 6L, 101L));
+        assertEquals(0, stock.stockOf(0));
+    }
+
+    @Test
+    void failedEnqueueReturnsStockAndReleasesOrder() {
+        InMemorySeckillStock stock = new InMemorySeckillStock(1, 1, 0, 1);
+        stock.failEnqueue = true;
+        assertThrows(IllegalStateException.class, () -> stock.seckill(VOUCHER_ID, 6L, 100L));
+        assertEquals(1, stock.stockOf(3));
+        assertTrue(stock.ordersOf(2).isEmpty());
+    }
+
+    /**
+     * 用内存数据模拟seckill.lua和seckill_segment.lua，只验证Java中的路由、预占和撤销
+     */
+    private static class InMemorySeckillStock extends SeckillStock {
+
+        private final int segments;
+        private final Map<String, Integer> stocks = new HashMap<>();
+        private final Map<String, Set<String>> orders = new HashMap<>();
+        private final List<Long> messages = new ArrayList<>();
+        private boolean failEnqueue;
+
+        InMemorySeckillStock(int... segmentStocks) {
+            super(null, "");
+            this.segments = segmentStocks.length;
+            for (int i = 0; i < segmentStocks.length; i++) {
+                stocks.put(segmentKey(VOUCHER_ID, i), segmentStocks[i]);
+            }
+        }
+
+        int stockOf(int segment) {
+            return stocks.get(segmentKey(VOUCHER_ID, segment));
+        }
+
+        Set<String> ordersOf(int segment) {
+            return orders.computeIfAbsent(segmentOrderKey(VOUCHER_ID, segment), k -> new HashSet<>());
+        }
+
+        @Override
+        long eval(RedisScript<Long> script, List<String> keys, String... args) {
+            if (keys.size() == 4) {
+                // seckill.lua：分段数key存在
+                return 3;
+            }
+            String userId = args[0];
+            Set<String> orderSet = keys.size() > 1 ? orders.computeIfAbsent(keys.get(1), k -> new HashSet<>()) : null;
+            if (orderSet != null && orderSet.contains(userId)) {
+                return 2;
+            }
+            int stock = stocks.getOrDefault(keys.get(0), 0);
+            if (stock > 0) {
+                stocks.put(keys.get(0), stock - 1);
+                if (orderSet != null) {
+                    orderSet.add(userId);
+                }
+                return 0;
+            }
+            if (orderSet != null) {
+                orderSet.add(userId);
+                return 3;
+            }
+            return 1;
+        }
+
+        @Override
+        void enqueue(Long voucherId, Long userId, long orderId) {
+            if (failEnqueue) {
+                throw new IllegalStateException("stream不可用");
+            }
+            messages.add(orderId);
+        }
+
+        @Override
+        void undo(String stockKey, String orderKey, String userId) {
+            if (stockKey != null) {
+                stocks.merge(stockKey, 1, Integer::sum);
+            }
+            orders.computeIfAbsent(orderKey, k -> new HashSet<>()).remove(userId);
+        }
+
+        @Override
+        int segmentsOf(Long voucherId) {
+            return segments;
+        }
+    }
+}